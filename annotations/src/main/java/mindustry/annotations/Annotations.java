@@ -80,6 +80,8 @@ public class Annotations{
         Class[] value();
         boolean collide() default false;
         boolean spatial() default false;
+        /** If true, a spatial group is indexed by a persistent uniform grid instead of a quadtree that is rebuilt every frame. */
+        boolean grid() default false;
         boolean mapping() default false;
     }
 
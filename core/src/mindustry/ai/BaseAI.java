@@ -91,8 +91,7 @@ public class BaseAI{
             }else{
                 var field = pathfinder.getField(data.team, Pathfinder.costGround, Pathfinder.fieldCore);
 
-                if(field.weights != null){
-                    int[][] weights = field.weights;
+                if(field.ready()){
                     for(int i = 0; i < pathStep; i++){
                         int minCost = Integer.MAX_VALUE;
                         int cx = calcTile.x, cy = calcTile.y;
@@ -101,8 +100,9 @@ public class BaseAI{
                             int nx = cx + p.x, ny = cy + p.y;
 
                             Tile other = world.tile(nx, ny);
-                            if(other != null && weights[nx][ny] < minCost && weights[nx][ny] != -1){
-                                minCost = weights[nx][ny];
+                            int weight = field.weight(nx, ny);
+                            if(other != null && weight < minCost && weight != -1){
+                                minCost = weight;
                                 calcTile = other;
                                 foundAny = true;
                             }
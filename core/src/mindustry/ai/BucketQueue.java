@@ -0,0 +1,132 @@
+package mindustry.ai;
+
+import arc.struct.*;
+
+/**
+ * A priority queue of tile indices, keyed by their weight in a flow field. Suited to searches with small integer costs.
+ * Entries within {@link #buckets} of the lowest weight are kept in a ring of buckets, one per weight; the rest wait in an overflow list
+ * until the ring runs empty. Entries are not updated when their weight changes: they are added again, and stale ones are skipped when polled.
+ */
+public class BucketQueue{
+    /** Amount of buckets in the ring, and thus the range of weights that is ordered exactly. Must be a power of two. */
+    static final int buckets = 2048;
+    private static final int mask = buckets - 1;
+
+    /** Buckets of the ring; created when first used. */
+    private final IntSeq[] ring = new IntSeq[buckets];
+    private final IntSeq overflow = new IntSeq();
+    /** Weight of the bucket that is polled next. */
+    private int current;
+    /** Amount of entries in the ring. */
+    private int size;
+
+    /** Adds a tile at the specified weight, which must not be negative. */
+    public void add(int index, int weight){
+        if(weight < current){
+            //below the weights being expanded, as when a repair seeds the edge of a changed area: start the ring at this weight
+            lower(weight);
+        }
+
+        if(weight - current >= buckets){
+            //out of range of the ring; ordered once the ring runs empty
+            overflow.add(index);
+        }else{
+            IntSeq bucket = ring[weight & mask];
+            if(bucket == null) bucket = ring[weight & mask] = new IntSeq();
+            bucket.add(index);
+            size++;
+        }
+    }
+
+    /**
+     * Removes the tile with the lowest weight.
+     * @param weights current weight of every tile; entries whose weight changed since they were added are skipped.
+     * @return the index of the tile, or -1 if the queue is empty.
+     */
+    public int poll(int[] weights){
+        while(true){
+            if(size == 0){
+                if(overflow.isEmpty()) return -1;
+                refill(weights);
+                continue;
+            }
+
+            IntSeq bucket = ring[current & mask];
+            if(bucket == null || bucket.isEmpty()){
+                current++;
+                continue;
+            }
+
+            int index = bucket.pop();
+            size--;
+
+            if(weights[index] == current){
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Moves the start of the ring down to a lower weight. Buckets below the current weight have been polled, so every other bucket
+     * keeps its slot; only the ones that are now out of range are moved to the overflow.
+     */
+    private void lower(int weight){
+        int from = Math.max(weight + buckets, current);
+        for(int w = from; w < current + buckets; w++){
+            IntSeq bucket = ring[w & mask];
+            if(bucket == null || bucket.isEmpty()) continue;
+
+            overflow.addAll(bucket);
+            size -= bucket.size;
+            bucket.clear();
+        }
+        current = weight;
+    }
+
+    /** Moves the overflowing entries that are closest to the lowest one into the ring. Entries that became impassable are dropped. */
+    private void refill(int[] weights){
+        int min = Integer.MAX_VALUE, kept = 0;
+        for(int i = 0; i < overflow.size; i++){
+            int index = overflow.items[i], weight = weights[index];
+            if(weight < 0) continue;
+
+            min = Math.min(min, weight);
+            overflow.items[kept++] = index;
+        }
+        overflow.size = kept;
+        if(kept == 0) return;
+
+        current = min;
+        kept = 0;
+        for(int i = 0; i < overflow.size; i++){
+            int index = overflow.items[i], weight = weights[index];
+            if(weight - current < buckets){
+                IntSeq bucket = ring[weight & mask];
+                if(bucket == null) bucket = ring[weight & mask] = new IntSeq();
+                bucket.add(index);
+                size++;
+            }else{
+                overflow.items[kept++] = index;
+            }
+        }
+        overflow.size = kept;
+    }
+
+    public boolean isEmpty(){
+        return size == 0 && overflow.isEmpty();
+    }
+
+    /** @return the amount of entries, including stale ones. */
+    public int size(){
+        return size + overflow.size;
+    }
+
+    public void clear(){
+        for(IntSeq bucket : ring){
+            if(bucket != null) bucket.clear();
+        }
+        overflow.clear();
+        size = 0;
+        current = 0;
+    }
+}
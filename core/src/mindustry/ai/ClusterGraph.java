@@ -0,0 +1,572 @@
+package mindustry.ai;
+
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.ai.Pathfinder.*;
+import mindustry.game.*;
+
+import java.util.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Hierarchical pathfinding data (HPA*) for one team and cost type, used instead of full flow fields on large maps.
+ * The map is split into square clusters. Wherever units can cross between two clusters, a pair of portal tiles is placed,
+ * and the distances between the portals of each cluster are precomputed. A field searches this portal graph from its targets,
+ * then computes tile weights only for the clusters that are actually asked for, seeded from the weights of their portals.
+ * <p>
+ * The graph and the portal weights of its fields are only changed on the pathfinding thread: tile changes rebuild the clusters they touch,
+ * and portal weights are repaired around them instead of searching again. Every change publishes a {@link ClusterState},
+ * which the main thread computes tile weights from.
+ */
+public class ClusterGraph{
+    /** Size of a cluster, in tiles. */
+    public static final int clusterSize = 32;
+    /** Crossings longer than this get a portal at each end instead of one in the middle. */
+    static final int maxPortalSpan = 8;
+    static final int impassable = -1;
+    /** Parent of portals that got their weight from a target in their own cluster. */
+    static final int fromTarget = -2;
+
+    final Team team;
+    final PathCost cost;
+    /** size of the map in tiles and in clusters */
+    final int width, height, cwidth, cheight;
+    /** portal tiles of every cluster, as tile indices. Lists are replaced instead of modified, so that published states can share them. */
+    final IntSeq[] portals;
+    /** for every cluster, the distance from each of its portals to each other one within the cluster, stored as rows; -1 if unreachable */
+    final int[][] distances;
+    /** index of every portal tile in the list of its cluster */
+    final IntIntMap portalSlots = new IntIntMap();
+
+    /** buffers of searches on the pathfinding thread and on the main thread */
+    private final Search threadSearch = new Search(), mainSearch = new Search();
+    private final IntSet rebuild = new IntSet();
+    /** clusters rebuilt by the last update, and the portals they had before it */
+    private final IntSeq rebuilt = new IntSeq(), removed = new IntSeq();
+    private final IntSeq invalid = new IntSeq();
+    private final IntSet invalidSet = new IntSet();
+
+    /** Builds the graph for the whole map. Pathfinding thread only. */
+    public ClusterGraph(Team team, PathCost cost, int width, int height){
+        this.team = team;
+        this.cost = cost;
+        this.width = width;
+        this.height = height;
+        this.cwidth = (width + clusterSize - 1) / clusterSize;
+        this.cheight = (height + clusterSize - 1) / clusterSize;
+        this.portals = new IntSeq[cwidth * cheight];
+        this.distances = new int[cwidth * cheight][];
+
+        for(int i = 0; i < portals.length; i++){
+            portals[i] = new IntSeq();
+        }
+        for(int i = 0; i < portals.length; i++){
+            findPortals(i);
+        }
+        for(int i = 0; i < portals.length; i++){
+            linkPortals(i);
+        }
+    }
+
+    /**
+     * Rebuilds the clusters containing the specified tile indices, and the clusters across any edge they lie on.
+     * Fields over this graph must be repaired with {@link #repair(Flowfield, IntSeq)} afterwards. Pathfinding thread only.
+     * @return the clusters that were rebuilt; only valid until the next update.
+     */
+    public IntSeq update(IntSeq changed){
+        rebuild.clear();
+        rebuilt.clear();
+        removed.clear();
+        for(int i = 0; i < changed.size; i++){
+            int index = changed.items[i], x = index % width, y = index / width;
+            if(y >= height) continue;
+
+            int cx = x / clusterSize, cy = y / clusterSize, lx = x % clusterSize, ly = y % clusterSize;
+            rebuild.add(cx + cy * cwidth);
+            if(lx == 0 && cx > 0) rebuild.add(cx - 1 + cy * cwidth);
+            if(lx == clusterSize - 1 && cx < cwidth - 1) rebuild.add(cx + 1 + cy * cwidth);
+            if(ly == 0 && cy > 0) rebuild.add(cx + (cy - 1) * cwidth);
+            if(ly == clusterSize - 1 && cy < cheight - 1) rebuild.add(cx + (cy + 1) * cwidth);
+        }
+        if(rebuild.isEmpty()) return rebuilt;
+
+        //portals are shared between neighboring clusters, so all of them have to be found before any are linked
+        var it = rebuild.iterator();
+        while(it.hasNext){
+            int cluster = it.next();
+            removed.addAll(portals[cluster]);
+            findPortals(cluster);
+            rebuilt.add(cluster);
+        }
+        for(int i = 0; i < rebuilt.size; i++){
+            linkPortals(rebuilt.items[i]);
+        }
+        return rebuilt;
+    }
+
+    /**
+     * Searches the portal graph from the targets of a field, and publishes the result. Used for new fields and when targets change.
+     * Pathfinding thread only.
+     */
+    public void search(Flowfield field){
+        ClusterField data = field.clusters;
+        IntIntMap last = data.weights;
+        IntSeq lastTargets = new IntSeq(data.targetClusters);
+
+        data.weights = new IntIntMap();
+        data.parents.clear();
+        data.targetSeeds.clear();
+        data.targetClusters.clear();
+
+        //targets are connected to the portals of their cluster
+        synchronized(field.targets){
+            for(int i = 0; i < field.targets.size; i++){
+                int pos = field.targets.items[i], x = Point2.x(pos), y = Point2.y(pos);
+                if(x >= 0 && y >= 0 && x < width && y < height && !data.targetClusters.contains(x / clusterSize + y / clusterSize * cwidth)){
+                    data.targetClusters.add(x / clusterSize + y / clusterSize * cwidth);
+                }
+            }
+        }
+        for(int i = 0; i < data.targetClusters.size; i++){
+            seedTargets(field, data.targetClusters.items[i]);
+        }
+
+        //local searches use the same heap, so the portal search can only start now
+        threadSearch.heapSize = 0;
+        for(var entry : data.targetSeeds){
+            data.weights.put(entry.key, entry.value);
+            data.parents.put(entry.key, fromTarget);
+            threadSearch.push(entry.value, entry.key);
+        }
+        relax(data, false);
+
+        //tile weights in clusters with targets come from the targets themselves, and the others from their portals
+        for(int i = 0; i < lastTargets.size; i++){
+            data.stamps[lastTargets.items[i]]++;
+        }
+        for(int i = 0; i < data.targetClusters.size; i++){
+            data.stamps[data.targetClusters.items[i]]++;
+        }
+        for(var entry : data.weights){
+            if(last.get(entry.key, impassable) != entry.value) data.stamps[clusterOf(entry.key)]++;
+        }
+        for(var entry : last){
+            if(!data.weights.containsKey(entry.key)) data.stamps[clusterOf(entry.key)]++;
+        }
+
+        publish(data);
+    }
+
+    /**
+     * Repairs the portal weights of a field after {@link #update(IntSeq)}, and publishes the result.
+     * Every portal whose weight was derived from a rebuilt cluster is invalidated; the search then continues from the valid portals around them.
+     * Falls back to a complete search if too many portals depend on the rebuilt clusters. Pathfinding thread only.
+     */
+    public void repair(Flowfield field, IntSeq rebuilt){
+        if(rebuilt.isEmpty()) return;
+
+        ClusterField data = field.clusters;
+        IntIntMap weights = data.weights, parents = data.parents;
+        invalid.clear();
+        invalidSet.clear();
+
+        for(int i = 0; i < removed.size; i++){
+            if(invalidSet.add(removed.items[i])) invalid.add(removed.items[i]);
+            //seeds of target clusters are found again below
+            data.targetSeeds.remove(removed.items[i], 0);
+        }
+        for(int i = 0; i < rebuilt.size; i++){
+            int cluster = rebuilt.items[i];
+            IntSeq list = portals[cluster];
+            for(int j = 0; j < list.size; j++){
+                if(invalidSet.add(list.items[j])) invalid.add(list.items[j]);
+            }
+            //tile weights change along with the tiles
+            data.stamps[cluster]++;
+
+            if(data.targetClusters.contains(cluster)){
+                seedTargets(field, cluster);
+            }
+        }
+
+        //invalidate everything downstream of the rebuilt clusters
+        for(int i = 0; i < invalid.size; i++){
+            int portal = invalid.items[i];
+            int cluster = clusterOf(portal);
+            IntSeq list = portals[cluster];
+            for(int j = 0; j < list.size; j++){
+                int other = list.items[j];
+                if(parents.get(other, impassable) == portal && invalidSet.add(other)) invalid.add(other);
+            }
+
+            int x = portal % width, y = portal / width;
+            for(int d = 0; d < 4; d++){
+                int other = crossing(x, y, d, cluster);
+                if(other != -1 && parents.get(other, impassable) == portal && invalidSet.add(other)) invalid.add(other);
+            }
+
+            if(invalid.size > weights.size / 4 + 64){
+                search(field);
+                return;
+            }
+        }
+
+        for(int i = 0; i < invalid.size; i++){
+            int portal = invalid.items[i];
+            if(weights.containsKey(portal)){
+                weights.remove(portal, 0);
+                parents.remove(portal, 0);
+                data.stamps[clusterOf(portal)]++;
+            }
+        }
+
+        //continue the search from the targets and valid portals that border the invalidated ones
+        threadSearch.heapSize = 0;
+        for(int i = 0; i < invalid.size; i++){
+            int portal = invalid.items[i];
+            if(!portalSlots.containsKey(portal)) continue;
+
+            int seed = data.targetSeeds.get(portal, impassable);
+            if(seed != impassable && seed < weights.get(portal, Integer.MAX_VALUE)){
+                weights.put(portal, seed);
+                parents.put(portal, fromTarget);
+                threadSearch.push(seed, portal);
+            }
+
+            int cluster = clusterOf(portal);
+            IntSeq list = portals[cluster];
+            for(int j = 0; j < list.size; j++){
+                int other = list.items[j];
+                if(!invalidSet.contains(other) && weights.containsKey(other)) threadSearch.push(weights.get(other, 0), other);
+            }
+
+            int x = portal % width, y = portal / width;
+            for(int d = 0; d < 4; d++){
+                int other = crossing(x, y, d, cluster);
+                if(other != -1 && !invalidSet.contains(other) && weights.containsKey(other)) threadSearch.push(weights.get(other, 0), other);
+            }
+        }
+        relax(data, true);
+
+        publish(data);
+    }
+
+    /** Runs the portal search on the heap, updating the weights and parents of a field. */
+    private void relax(ClusterField data, boolean stamp){
+        IntIntMap weights = data.weights, parents = data.parents;
+
+        while(threadSearch.heapSize > 0){
+            long next = threadSearch.pop();
+            int portal = (int)next, weight = (int)(next >>> 32);
+            if(weights.get(portal, Integer.MAX_VALUE) != weight) continue;
+
+            int cluster = clusterOf(portal), slot = portalSlots.get(portal, 0);
+            IntSeq list = portals[cluster];
+            int[] dists = distances[cluster];
+
+            //other portals of the same cluster
+            for(int i = 0; i < list.size; i++){
+                int dist = dists[slot * list.size + i], other = list.items[i];
+                if(dist != impassable && weight + dist < weights.get(other, Integer.MAX_VALUE)){
+                    weights.put(other, weight + dist);
+                    parents.put(other, portal);
+                    threadSearch.push(weight + dist, other);
+                    if(stamp) data.stamps[cluster]++;
+                }
+            }
+
+            //the other side of the crossing
+            int x = portal % width, y = portal / width;
+            for(int d = 0; d < 4; d++){
+                int other = crossing(x, y, d, cluster);
+                if(other == -1) continue;
+
+                int otherCost = cost.getCost(team, pathfinder.tiles[other]);
+                if(otherCost != impassable && weight + otherCost < weights.get(other, Integer.MAX_VALUE)){
+                    weights.put(other, weight + otherCost);
+                    parents.put(other, portal);
+                    threadSearch.push(weight + otherCost, other);
+                    if(stamp) data.stamps[clusterOf(other)]++;
+                }
+            }
+        }
+    }
+
+    /** Computes the weights that the targets in a cluster give its portals. */
+    private void seedTargets(Flowfield field, int cluster){
+        int[] tiles = searchCluster(threadSearch, field, cluster, portals[cluster], null);
+        IntSeq list = portals[cluster];
+        for(int i = 0; i < list.size; i++){
+            int portal = list.items[i], weight = tiles[localIndex(portal)];
+            if(weight != impassable){
+                field.clusters.targetSeeds.put(portal, weight);
+            }else{
+                field.clusters.targetSeeds.remove(portal, 0);
+            }
+        }
+    }
+
+    /** Makes the current portal weights of a field available to the main thread. */
+    private void publish(ClusterField data){
+        IntIntMap weights = new IntIntMap(data.weights.size);
+        for(var entry : data.weights){
+            weights.put(entry.key, entry.value);
+        }
+        data.state = new ClusterState(this, weights, portals.clone(), data.stamps.clone());
+    }
+
+    /**
+     * @return the weight of a tile in a field over this graph: the cost of getting from it to the closest target, or -1 if unreachable.
+     * Computes the tile weights of the tile's cluster if they are out of date. Main thread only.
+     */
+    int weight(Flowfield field, ClusterState state, int x, int y){
+        if(x < 0 || y < 0 || x >= width || y >= height) return impassable;
+
+        ClusterField data = field.clusters;
+        int cluster = x / clusterSize + y / clusterSize * cwidth;
+        int[] weights = data.tiles.get(cluster);
+        if(weights == null || data.tileStamps.get(cluster, -1) != state.stamps[cluster]){
+            weights = searchCluster(mainSearch, field, cluster, state.portals[cluster], state.weights).clone();
+            data.tiles.put(cluster, weights);
+            data.tileStamps.put(cluster, state.stamps[cluster]);
+        }
+
+        return weights[x % clusterSize + y % clusterSize * clusterSize];
+    }
+
+    /** Searches a cluster from the targets in it and, if specified, from its portals. The result is only valid until the next search. */
+    private int[] searchCluster(Search search, Flowfield field, int cluster, IntSeq list, @Nullable IntIntMap portalWeights){
+        int[] local = search.local;
+        Arrays.fill(local, impassable);
+        search.heapSize = 0;
+
+        int ox = cluster % cwidth * clusterSize, oy = cluster / cwidth * clusterSize;
+        synchronized(field.targets){
+            for(int i = 0; i < field.targets.size; i++){
+                int pos = field.targets.items[i], x = Point2.x(pos) - ox, y = Point2.y(pos) - oy;
+                if(x >= 0 && y >= 0 && x < clusterSize && y < clusterSize && ox + x < width && oy + y < height){
+                    local[x + y * clusterSize] = 0;
+                    search.push(0, x + y * clusterSize);
+                }
+            }
+        }
+
+        if(portalWeights != null){
+            for(int i = 0; i < list.size; i++){
+                int portal = list.items[i], weight = portalWeights.get(portal, impassable), index = localIndex(portal);
+                if(weight != impassable && (local[index] == impassable || weight < local[index])){
+                    local[index] = weight;
+                    search.push(weight, index);
+                }
+            }
+        }
+
+        search.expand(ox, oy);
+        return local;
+    }
+
+    /** Finds the crossings on every edge of a cluster. */
+    private void findPortals(int cluster){
+        IntSeq old = portals[cluster];
+        for(int i = 0; i < old.size; i++){
+            portalSlots.remove(old.items[i], 0);
+        }
+        IntSeq list = portals[cluster] = new IntSeq();
+
+        int cx = cluster % cwidth, cy = cluster / cwidth;
+        int x1 = cx * clusterSize, y1 = cy * clusterSize, x2 = Math.min(x1 + clusterSize, width) - 1, y2 = Math.min(y1 + clusterSize, height) - 1;
+
+        if(cx > 0) scanEdge(list, x1, y1, 0, 1, y2 - y1 + 1, -1, 0);
+        if(cx < cwidth - 1) scanEdge(list, x2, y1, 0, 1, y2 - y1 + 1, 1, 0);
+        if(cy > 0) scanEdge(list, x1, y1, 1, 0, x2 - x1 + 1, 0, -1);
+        if(cy < cheight - 1) scanEdge(list, x1, y2, 1, 0, x2 - x1 + 1, 0, 1);
+
+        for(int i = 0; i < list.size; i++){
+            portalSlots.put(list.items[i], i);
+        }
+    }
+
+    /**
+     * Adds portals for every run of tiles along an edge that can be crossed to the outside.
+     * (x, y) is the first tile of the edge, (dx, dy) the direction along it, and (nx, ny) the direction to the outside.
+     */
+    private void scanEdge(IntSeq out, int x, int y, int dx, int dy, int length, int nx, int ny){
+        int start = -1;
+        for(int i = 0; i <= length; i++){
+            boolean open = i < length && passable(x + dx * i, y + dy * i) && passable(x + dx * i + nx, y + dy * i + ny);
+            if(open && start == -1){
+                start = i;
+            }else if(!open && start != -1){
+                int end = i - 1;
+                if(end - start + 1 > maxPortalSpan){
+                    addPortal(out, x + dx * start, y + dy * start);
+                    addPortal(out, x + dx * end, y + dy * end);
+                }else{
+                    int mid = (start + end) / 2;
+                    addPortal(out, x + dx * mid, y + dy * mid);
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private void addPortal(IntSeq out, int x, int y){
+        int index = x + y * width;
+        if(!out.contains(index)) out.add(index);
+    }
+
+    /** Computes the distances between the portals of a cluster. */
+    private void linkPortals(int cluster){
+        IntSeq list = portals[cluster];
+        int[] dists = distances[cluster] = new int[list.size * list.size];
+        int ox = cluster % cwidth * clusterSize, oy = cluster / cwidth * clusterSize;
+        int[] local = threadSearch.local;
+
+        for(int i = 0; i < list.size; i++){
+            Arrays.fill(local, impassable);
+            threadSearch.heapSize = 0;
+            int start = localIndex(list.items[i]);
+            local[start] = 0;
+            threadSearch.push(0, start);
+            threadSearch.expand(ox, oy);
+
+            for(int j = 0; j < list.size; j++){
+                dists[i * list.size + j] = local[localIndex(list.items[j])];
+            }
+        }
+    }
+
+    /** @return the portal on the other side of a crossing from a portal in one of the four directions, or -1 if there is none. */
+    private int crossing(int x, int y, int direction, int cluster){
+        int ox = x + (direction == 0 ? 1 : direction == 2 ? -1 : 0), oy = y + (direction == 1 ? 1 : direction == 3 ? -1 : 0);
+        if(ox < 0 || oy < 0 || ox >= width || oy >= height) return -1;
+
+        int other = ox + oy * width;
+        return clusterOf(other) == cluster || !portalSlots.containsKey(other) ? -1 : other;
+    }
+
+    private boolean passable(int x, int y){
+        return x >= 0 && y >= 0 && x < width && y < height && cost.getCost(team, pathfinder.tiles[x + y * width]) != impassable;
+    }
+
+    private int clusterOf(int index){
+        return index % width / clusterSize + index / width / clusterSize * cwidth;
+    }
+
+    /** @return the index of a tile within its cluster. */
+    private int localIndex(int index){
+        return index % width % clusterSize + index / width % clusterSize * clusterSize;
+    }
+
+    /** Buffers of a search, so that the pathfinding thread and the main thread can search at the same time. */
+    private class Search{
+        final int[] local = new int[clusterSize * clusterSize];
+        long[] heap = new long[64];
+        int heapSize;
+
+        /** Runs the search on the heap within one cluster, writing weights to {@link #local}. */
+        void expand(int ox, int oy){
+            int cw = Math.min(clusterSize, width - ox), ch = Math.min(clusterSize, height - oy);
+            int[] tiles = pathfinder.tiles;
+
+            while(heapSize > 0){
+                long next = pop();
+                int index = (int)next, weight = (int)(next >>> 32);
+                if(local[index] != weight) continue;
+
+                int x = index % clusterSize, y = index / clusterSize;
+                for(int d = 0; d < 4; d++){
+                    int nx = x + (d == 0 ? 1 : d == 2 ? -1 : 0), ny = y + (d == 1 ? 1 : d == 3 ? -1 : 0);
+                    if(nx < 0 || ny < 0 || nx >= cw || ny >= ch) continue;
+
+                    int other = nx + ny * clusterSize, otherCost = cost.getCost(team, tiles[ox + nx + (oy + ny) * width]);
+                    if(otherCost != impassable && (local[other] == impassable || weight + otherCost < local[other])){
+                        local[other] = weight + otherCost;
+                        push(weight + otherCost, other);
+                    }
+                }
+            }
+        }
+
+        void push(int weight, int value){
+            if(heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+
+            long entry = ((long)weight << 32) | value;
+            int i = heapSize++;
+            while(i > 0){
+                int parent = (i - 1) >> 1;
+                if(heap[parent] <= entry) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = entry;
+        }
+
+        long pop(){
+            long top = heap[0], last = heap[--heapSize];
+            int i = 0;
+            while(true){
+                int child = i * 2 + 1;
+                if(child >= heapSize) break;
+                if(child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+                if(heap[child] >= last) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+
+    /** Portal weights of a field as published to the main thread. Never modified after creation. */
+    static class ClusterState{
+        final ClusterGraph graph;
+        /** weight of every reached portal */
+        final IntIntMap weights;
+        /** portal lists of every cluster at the time of publishing */
+        final IntSeq[] portals;
+        /** stamp of every cluster; tile weights computed at a different stamp are outdated */
+        final int[] stamps;
+
+        ClusterState(ClusterGraph graph, IntIntMap weights, IntSeq[] portals, int[] stamps){
+            this.graph = graph;
+            this.weights = weights;
+            this.portals = portals;
+            this.stamps = stamps;
+        }
+    }
+
+    /** Weights of a field over a cluster graph. */
+    public static class ClusterField{
+        /** latest published portal weights; null until the first search is done */
+        volatile @Nullable ClusterState state;
+
+        /** tile weights of the clusters that were asked for, and the cluster stamps they were computed at. Main thread only. */
+        final IntMap<int[]> tiles = new IntMap<>();
+        final IntIntMap tileStamps = new IntIntMap();
+
+        /** weight of every reached portal, and the portal or target it was reached from. Pathfinding thread only, like the rest. */
+        IntIntMap weights = new IntIntMap();
+        final IntIntMap parents = new IntIntMap();
+        /** weights that targets give the portals of their clusters */
+        final IntIntMap targetSeeds = new IntIntMap();
+        /** clusters containing targets at the last search */
+        final IntSeq targetClusters = new IntSeq();
+        /** incremented for a cluster whenever the weights it is seeded from change */
+        final int[] stamps;
+        /** set when the targets changed */
+        boolean retarget = true;
+
+        public ClusterField(int clusters){
+            stamps = new int[clusters];
+        }
+
+        /** @return the weight of a tile, or -1 if it is unreachable or no weights have been published yet. Main thread only. */
+        int weight(Flowfield field, int x, int y){
+            ClusterState state = this.state;
+            return state == null ? impassable : state.graph.weight(field, state, x, y);
+        }
+    }
+}
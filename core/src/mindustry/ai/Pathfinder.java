@@ -6,6 +6,7 @@ import arc.math.geom.*;
 import arc.struct.*;
 import arc.util.*;
 import arc.util.async.*;
+import mindustry.ai.ClusterGraph.*;
 import mindustry.annotations.Annotations.*;
 import mindustry.content.*;
 import mindustry.core.*;
@@ -16,6 +17,9 @@ import mindustry.world.*;
 import mindustry.world.blocks.storage.*;
 import mindustry.world.meta.*;
 
+import java.util.*;
+import java.util.concurrent.*;
+
 import static mindustry.Vars.*;
 
 public class Pathfinder implements Runnable{
@@ -23,6 +27,10 @@ public class Pathfinder implements Runnable{
     private static final int updateFPS = 60;
     private static final int updateInterval = 1000 / updateFPS;
     private static final int impassable = -1;
+    /** Amount of threads that flow fields are updated on in parallel. */
+    private static final int threads = Math.max(Math.min(Runtime.getRuntime().availableProcessors() - 1, 4), 1);
+    /** Maps with more tiles than this use hierarchical pathfinding instead of full flow fields; see {@link ClusterGraph}. */
+    public static int clusterThreshold = 512 * 512;
 
     public static final int
         fieldCore = 0,
@@ -60,15 +68,30 @@ public class Pathfinder implements Runnable{
 
     //maps team, cost, type to flow field
     Flowfield[][][] cache;
+    //maps team, cost to cluster graph; only used on large maps. Pathfinding thread only.
+    ClusterGraph[][] graphs;
 
-    /** tile data, see PathTileStruct */
-    int[][] tiles = new int[0][0];
+    /** tile data, see PathTileStruct; indexed by x + y * width */
+    int[] tiles = {};
+    /** size of the tile data */
+    int width, height;
     /** unordered array of path data for iteration only. DO NOT iterate or access this in the main thread. */
     Seq<Flowfield> threadList = new Seq<>(), mainList = new Seq<>();
+    /** fields computed over cluster graphs, and tiles changed since their graphs were last updated. Pathfinding thread only. */
+    Seq<Flowfield> clusterList = new Seq<>();
+    IntSeq clusterChanges = new IntSeq();
     /** handles task scheduling on the update thread. */
     TaskQueue queue = new TaskQueue();
     /** Current pathfinding thread */
     @Nullable Thread thread;
+    /** Updates independent flow fields in parallel. */
+    final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+        Thread thread = new Thread(r, "Pathfinder Worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Flow field updates running in the current iteration. Pathfinding thread only. */
+    Seq<Future<?>> running = new Seq<>();
     IntSeq tmpArray = new IntSeq();
 
     public Pathfinder(){
@@ -78,13 +101,17 @@ public class Pathfinder implements Runnable{
             stop();
 
             //reset and update internal tile array
-            tiles = new int[world.width()][world.height()];
+            width = world.width();
+            height = world.height();
+            tiles = new int[width * height];
             threadList = new Seq<>();
             mainList = new Seq<>();
+            clusterList = new Seq<>();
+            clusterChanges = new IntSeq();
             clearCache();
 
             for(Tile tile : world.tiles){
-                tiles[tile.x][tile.y] = packTile(tile);
+                tiles[tile.x + tile.y * width] = packTile(tile);
             }
 
             preloadPath(getField(state.rules.waveTeam, costGround, fieldCore));
@@ -104,6 +131,12 @@ public class Pathfinder implements Runnable{
 
     private void clearCache(){
         cache = new Flowfield[256][5][5];
+        graphs = new ClusterGraph[256][5];
+    }
+
+    /** @return whether flow fields on the current map are computed over a {@link ClusterGraph}. */
+    public boolean hierarchical(){
+        return width * height > clusterThreshold;
     }
 
     /** Packs a tile into its internal representation. */
@@ -151,32 +184,48 @@ public class Pathfinder implements Runnable{
     }
 
     /** Update a tile in the internal pathfinding grid.
-     * Causes a complete pathfinding recalculation. Main thread only. */
+     * Flow fields are repaired around the tile; see {@link #repair(Flowfield)}. Cluster graphs are rebuilt on the pathfinding thread. Main thread only. */
     public void updateTile(Tile tile){
         if(net.client()) return;
 
-        int x = tile.x, y = tile.y;
-
+        //the tiles next to a building change too, as they store whether they are near a solid
+        IntSeq changed = new IntSeq();
         tile.getLinkedTiles(t -> {
-            if(Structs.inBounds(t.x, t.y, tiles)){
-                tiles[t.x][t.y] = packTile(t);
+            for(int i = -1; i < 4; i++){
+                int x = i == -1 ? t.x : t.x + Geometry.d4x[i], y = i == -1 ? t.y : t.y + Geometry.d4y[i];
+                Tile other = world.tile(x, y);
+
+                if(other != null && x < width && y < height){
+                    int index = x + y * width, packed = packTile(other);
+                    if(packed != tiles[index] || i == -1){
+                        tiles[index] = packed;
+                        changed.add(index);
+                    }
+                }
             }
         });
 
         //can't iterate through array so use the map, which should not lead to problems
         for(Flowfield path : mainList){
             if(path != null){
+                tmpArray.clear();
+                path.getPositions(tmpArray);
+
                 synchronized(path.targets){
+                    if(tmpArray.equals(path.targets)) continue;
+
                     path.targets.clear();
-                    path.getPositions(path.targets);
+                    path.targets.addAll(tmpArray);
                 }
+                if(path.clusters != null) queue.post(() -> path.clusters.retarget = true);
             }
         }
 
         queue.post(() -> {
             for(Flowfield data : threadList){
-                updateTargets(data, x, y);
+                data.changed.addAll(changed);
             }
+            clusterChanges.addAll(changed);
         });
     }
 
@@ -187,16 +236,13 @@ public class Pathfinder implements Runnable{
             if(net.client()) return;
             try{
 
-                if(state.isPlaying()){
-                    queue.run();
-
-                    //total update time no longer than maxUpdate
-                    for(Flowfield data : threadList){
-                        updateFrontier(data, maxUpdate / threadList.size);
+                try{
+                    if(state.isPlaying()){
+                        queue.run();
+                        updateClusters();
+                        update();
                     }
-                }
 
-                try{
                     Thread.sleep(updateInterval);
                 }catch(InterruptedException e){
                     //stop looping when interrupted externally
@@ -208,6 +254,77 @@ public class Pathfinder implements Runnable{
         }
     }
 
+    /**
+     * Rebuilds the parts of cluster graphs that changed and repairs the fields over them, and searches the fields whose targets changed.
+     * Results are published to the main thread by the graphs. Pathfinding thread only.
+     */
+    private void updateClusters(){
+        if(!clusterChanges.isEmpty()){
+            for(ClusterGraph[] team : graphs){
+                for(ClusterGraph graph : team){
+                    if(graph == null) continue;
+
+                    IntSeq rebuilt = graph.update(clusterChanges);
+                    for(Flowfield field : clusterList){
+                        if(field.graph == graph) graph.repair(field, rebuilt);
+                    }
+                }
+            }
+            clusterChanges.clear();
+        }
+
+        for(Flowfield field : clusterList){
+            if(field.clusters.retarget){
+                field.clusters.retarget = false;
+                field.graph.search(field);
+                field.initialized = true;
+            }
+        }
+    }
+
+    /**
+     * Repairs and advances every flow field. Fields are independent of each other, so they are distributed across {@link #executor}.
+     * Total update time is no longer than maxUpdate per thread. Pathfinding thread only.
+     */
+    private void update() throws InterruptedException{
+        int active = 0;
+        for(Flowfield data : threadList){
+            if(data.active()) active++;
+        }
+        if(active == 0) return;
+
+        long budget = maxUpdate * threads / Math.max(active, threads);
+
+        //not worth handing off a single field
+        if(active == 1){
+            for(Flowfield data : threadList){
+                if(data.active()){
+                    repair(data);
+                    updateFrontier(data, budget);
+                }
+            }
+            return;
+        }
+
+        running.clear();
+        for(Flowfield data : threadList){
+            if(data.active()){
+                running.add(executor.submit(() -> {
+                    repair(data);
+                    updateFrontier(data, budget);
+                }));
+            }
+        }
+
+        for(Future<?> future : running){
+            try{
+                future.get();
+            }catch(ExecutionException e){
+                Log.err(e.getCause());
+            }
+        }
+    }
+
     public Flowfield getField(Team team, int costType, int fieldType){
         if(cache[team.id][costType][fieldType] == null){
             Flowfield field = fieldTypes.get(fieldType).get();
@@ -217,7 +334,19 @@ public class Pathfinder implements Runnable{
             field.getPositions(field.targets);
 
             cache[team.id][costType][fieldType] = field;
-            queue.post(() -> registerPath(field));
+
+            if(hierarchical()){
+                //portal weights are searched in the background, and tile weights computed on demand on the main thread
+                int clusterSize = ClusterGraph.clusterSize;
+                field.clusters = new ClusterField(((width + clusterSize - 1) / clusterSize) * ((height + clusterSize - 1) / clusterSize));
+                field.width = width;
+                field.height = height;
+                field.lastUpdateTime = Time.millis();
+                mainList.add(field);
+                queue.post(() -> registerClusters(field, costType));
+            }else{
+                queue.post(() -> registerPath(field));
+            }
         }
         return cache[team.id][costType][fieldType];
     }
@@ -245,13 +374,16 @@ public class Pathfinder implements Runnable{
                     path.getPositions(path.targets);
 
                     //queue an update
-                    queue.post(() -> updateTargets(path));
+                    if(path.clusters != null){
+                        queue.post(() -> path.clusters.retarget = true);
+                    }else{
+                        queue.post(() -> updateTargets(path));
+                    }
                 }
             }
         }
 
-        int[][] values = path.weights;
-        int value = values[tile.x][tile.y];
+        int fwidth = path.width, value = path.weight(tile.x, tile.y);
 
         Tile current = null;
         int tl = 0;
@@ -259,12 +391,13 @@ public class Pathfinder implements Runnable{
             int dx = tile.x + point.x, dy = tile.y + point.y;
 
             Tile other = world.tile(dx, dy);
-            if(other == null) continue;
+            if(other == null || dx >= fwidth || dy >= path.height) continue;
 
-            if(values[dx][dy] < value && (current == null || values[dx][dy] < tl) && path.passable(dx, dy) &&
+            int weight = path.weight(dx, dy);
+            if(weight < value && (current == null || weight < tl) && path.passable(dx, dy) &&
             !(point.x != 0 && point.y != 0 && (!path.passable(tile.x + point.x, tile.y) || !path.passable(tile.x, tile.y + point.y)))){ //diagonal corner trap
                 current = other;
-                tl = values[dx][dy];
+                tl = weight;
             }
         }
 
@@ -274,27 +407,87 @@ public class Pathfinder implements Runnable{
     }
 
     /**
-     * Clears the frontier, increments the search and sets up all flow sources.
-     * This only occurs for active teams.
+     * Repairs a flow field around tiles whose cost changed, instead of searching the whole map again.
+     * Every tile whose weight was derived from a changed tile is invalidated; the search then continues from the valid tiles around them.
+     * Falls back to a complete search if a target changed, or if too much of the map depends on the changed tiles.
+     * Runs on the thread that updates the field.
      */
-    private void updateTargets(Flowfield path, int x, int y){
-        if(!Structs.inBounds(x, y, path.weights)) return;
-
-        if(path.weights[x][y] == 0){
-            //this was a previous target
-            path.frontier.clear();
-        }else if(!path.frontier.isEmpty()){
-            //skip if this path is processing
-            return;
+    private void repair(Flowfield path){
+        IntSeq changed = path.changed;
+        if(changed.isEmpty()) return;
+
+        int[] weights = path.weights;
+        char[] searches = path.searches;
+        int search = path.search, width = path.width, size = weights.length;
+        IntSeq invalid = path.invalid;
+        invalid.clear();
+
+        for(int i = 0; i < changed.size; i++){
+            int index = changed.items[i];
+            if(index >= size) continue;
+
+            boolean target;
+            synchronized(path.targets){
+                target = path.targets.contains(Point2.pack(index % width, index / width));
+            }
+
+            //targets are the source of every weight
+            if(target || weights[index] == 0){
+                changed.clear();
+                path.frontier.clear();
+                updateTargets(path);
+                return;
+            }
+
+            //tiles that were impassable may not have been reached, but are repaired all the same
+            searches[index] = 0;
+            invalid.add(index);
+        }
+        int roots = invalid.size;
+
+        //invalidate everything downstream of the changed tiles
+        for(int i = 0; i < invalid.size; i++){
+            int index = invalid.items[i], x = index % width, weight = weights[index];
+            if(weight == impassable) continue;
+
+            for(int d = 0; d < 4; d++){
+                int other = neighbor(index, x, d, width, size);
+                if(other == -1 || searches[other] != search || weights[other] == 0) continue;
+
+                if(weights[other] == weight + path.cost.getCost(path.team, tiles[other])){
+                    searches[other] = 0;
+                    invalid.add(other);
+                }
+            }
+
+            if(invalid.size > size / 4){
+                changed.clear();
+                path.frontier.clear();
+                updateTargets(path);
+                return;
+            }
         }
 
-        //update cost of the tile TODO maybe only update the cost when it's not passable
-        path.weights[x][y] = path.cost.getCost(path.team, tiles[x][y]);
+        for(int i = 0; i < roots; i++){
+            int index = invalid.items[i];
+            if(path.cost.getCost(path.team, tiles[index]) == impassable){
+                weights[index] = impassable;
+            }
+        }
 
-        //clear frontier to prevent contamination
-        path.frontier.clear();
+        //continue the search from the valid tiles that border the invalidated ones
+        for(int i = 0; i < invalid.size; i++){
+            int index = invalid.items[i], x = index % width;
 
-        updateTargets(path);
+            for(int d = 0; d < 4; d++){
+                int other = neighbor(index, x, d, width, size);
+                if(other != -1 && searches[other] == search && weights[other] != impassable){
+                    path.frontier.add(other, weights[other]);
+                }
+            }
+        }
+
+        changed.clear();
     }
 
     /** Increments the search and sets up flow sources. Does not change the frontier. */
@@ -303,26 +496,44 @@ public class Pathfinder implements Runnable{
         //increment search, but do not clear the frontier
         path.search++;
 
+        //search IDs are stored as chars; when they run out, every tile is marked as outdated instead
+        if(path.search > Character.MAX_VALUE){
+            Arrays.fill(path.searches, (char)0);
+            path.search = 1;
+        }
+
         synchronized(path.targets){
             //add targets
             for(int i = 0; i < path.targets.size; i++){
                 int pos = path.targets.get(i);
-                int tx = Point2.x(pos), ty = Point2.y(pos);
+                int index = Point2.x(pos) + Point2.y(pos) * path.width;
 
-                path.weights[tx][ty] = 0;
-                path.searches[tx][ty] = path.search;
-                path.frontier.addFirst(pos);
+                path.weights[index] = 0;
+                path.searches[index] = (char)path.search;
+                path.frontier.add(index, 0);
             }
         }
     }
 
     private void preloadPath(Flowfield path){
+        //hierarchical fields are computed on demand
+        if(path.clusters != null) return;
+
         path.targets.clear();
         path.getPositions(path.targets);
         registerPath(path);
         updateFrontier(path, -1);
     }
 
+    /** Sets up a field over the cluster graph of its team and cost type, building the graph if needed. Pathfinding thread only. */
+    private void registerClusters(Flowfield field, int costType){
+        if(graphs[field.team.id][costType] == null){
+            graphs[field.team.id][costType] = new ClusterGraph(field.team, field.cost, width, height);
+        }
+        field.graph = graphs[field.team.id][costType];
+        clusterList.add(field);
+    }
+
     /**
      * TODO wrong docs
      * Created a new flowfield that aims to get to a certain target for a certain team.
@@ -330,7 +541,7 @@ public class Pathfinder implements Runnable{
      */
     private void registerPath(Flowfield path){
         path.lastUpdateTime = Time.millis();
-        path.setup(tiles.length, tiles[0].length);
+        path.setup(width, height);
 
         threadList.add(path);
 
@@ -338,54 +549,69 @@ public class Pathfinder implements Runnable{
         Core.app.post(() -> mainList.add(path));
 
         //fill with impassables by default
-        for(int x = 0; x < world.width(); x++){
-            for(int y = 0; y < world.height(); y++){
-                path.weights[x][y] = impassable;
-            }
-        }
+        Arrays.fill(path.weights, impassable);
 
         //add targets
         for(int i = 0; i < path.targets.size; i++){
             int pos = path.targets.get(i);
-            path.weights[Point2.x(pos)][Point2.y(pos)] = 0;
-            path.frontier.addFirst(pos);
+            int index = Point2.x(pos) + Point2.y(pos) * width;
+            path.weights[index] = 0;
+            path.searches[index] = (char)path.search;
+            path.frontier.add(index, 0);
         }
     }
 
-    /** Update the frontier for a path. Pathfinding thread only. */
+    /**
+     * Update the frontier for a path. Tiles are expanded in order of weight, so every tile is final once it is expanded.
+     * Runs on the thread that updates the field.
+     */
     private void updateFrontier(Flowfield path, long nsToRun){
         long start = Time.nanos();
-
-        while(path.frontier.size > 0 && (nsToRun < 0 || Time.timeSinceNanos(start) <= nsToRun)){
-            Tile tile = world.tile(path.frontier.removeLast());
-            if(tile == null || path.weights == null) return; //something went horribly wrong, bail
-            int cost = path.weights[tile.x][tile.y];
-
-            //pathfinding overflowed for some reason, time to bail. the next block update will handle this, hopefully
-            if(path.frontier.size >= world.width() * world.height()){
-                path.frontier.clear();
-                return;
-            }
-
-            if(cost != impassable){
-                for(Point2 point : Geometry.d4){
-
-                    int dx = tile.x + point.x, dy = tile.y + point.y;
-
-                    if(dx < 0 || dy < 0 || dx >= tiles.length || dy >= tiles[0].length) continue;
-
-                    int otherCost = path.cost.getCost(path.team, tiles[dx][dy]);
-
-                    if((path.weights[dx][dy] > cost + otherCost || path.searches[dx][dy] < path.search) && otherCost != impassable){
-                        path.frontier.addFirst(Point2.pack(dx, dy));
-                        path.weights[dx][dy] = cost + otherCost;
-                        path.searches[dx][dy] = (short)path.search;
-                    }
+        int[] weights = path.weights, tiles = this.tiles;
+        char[] searches = path.searches;
+        int width = path.width, size = weights.length, search = path.search;
+        char searchID = (char)search;
+        BucketQueue frontier = path.frontier;
+        PathCost cost = path.cost;
+        Team team = path.team;
+
+        //something went horribly wrong, bail
+        if(tiles.length != size) return;
+
+        //check the time every few tiles, as it is comparatively expensive
+        int iterations = 0;
+        while(nsToRun < 0 || (iterations++ & 63) != 0 || Time.timeSinceNanos(start) <= nsToRun){
+            int index = frontier.poll(weights);
+            if(index == -1) return;
+
+            int weight = weights[index], x = index % width;
+            if(weight == impassable) continue;
+
+            for(int d = 0; d < 4; d++){
+                int other = neighbor(index, x, d, width, size);
+                if(other == -1) continue;
+
+                int otherCost = cost.getCost(team, tiles[other]);
+
+                if(otherCost != impassable && (weights[other] > weight + otherCost || searches[other] != search)){
+                    weights[other] = weight + otherCost;
+                    searches[other] = searchID;
+                    frontier.add(other, weight + otherCost);
                 }
             }
         }
     }
 
+    /** @return the index of the tile next to a tile in one of the four directions, or -1 if it is out of bounds. */
+    private static int neighbor(int index, int x, int direction, int width, int size){
+        switch(direction){
+            case 0: return x + 1 < width ? index + 1 : -1;
+            case 1: return index + width < size ? index + width : -1;
+            case 2: return x > 0 ? index - 1 : -1;
+            default: return index - width >= 0 ? index - width : -1;
+        }
+    }
+
     public static class EnemyCoreField extends Flowfield{
         @Override
         protected void getPositions(IntSeq out){
@@ -437,30 +663,56 @@ public class Pathfinder implements Runnable{
         /** Function for calculating path cost. Set before using. */
         protected PathCost cost = costTypes.get(costGround);
 
-        /** costs of getting to a specific tile */
-        public int[][] weights;
-        /** search IDs of each position - the highest, most recent search is prioritized and overwritten */
-        public int[][] searches;
-        /** search frontier, these are Pos objects */
-        IntQueue frontier = new IntQueue();
+        /** costs of getting to a specific tile, indexed by x + y * width */
+        public int[] weights;
+        /** search IDs of each position - the most recent search is prioritized and overwritten; 0 marks outdated tiles */
+        public char[] searches;
+        /** size of the field */
+        public int width, height;
+        /** search frontier, these are tile indices */
+        BucketQueue frontier = new BucketQueue();
+        /** indices of tiles whose cost changed since the last update. Pathfinding thread only. */
+        final IntSeq changed = new IntSeq();
+        /** tiles invalidated by the last repair. */
+        final IntSeq invalid = new IntSeq();
         /** all target positions; these positions have a cost of 0, and must be synchronized on! */
         final IntSeq targets = new IntSeq();
         /** current search ID */
         int search = 1;
+        /** graph this field is computed over on large maps, instead of {@link #weights}; see {@link Pathfinder#hierarchical()}. Set on the pathfinding thread. */
+        @Nullable ClusterGraph graph;
+        @Nullable ClusterField clusters;
         /** last updated time */
         long lastUpdateTime;
         /** whether this flow field is ready to be used */
         boolean initialized;
 
         void setup(int width, int height){
-            this.weights = new int[width][height];
-            this.searches = new int[width][height];
-            this.frontier.ensureCapacity((width + height) * 3);
+            this.width = width;
+            this.height = height;
+            this.weights = new int[width * height];
+            this.searches = new char[width * height];
             this.initialized = true;
         }
 
+        /** @return the cost of getting from a tile to the closest target, or -1 if it is unreachable. */
+        public int weight(int x, int y){
+            if(clusters != null) return clusters.weight(this, x, y);
+            return x < 0 || y < 0 || x >= width || y >= height ? impassable : weights[x + y * width];
+        }
+
+        /** @return whether weights can be read from this field yet. */
+        public boolean ready(){
+            return clusters != null ? clusters.state != null : weights != null;
+        }
+
+        /** @return whether this field has any work to do. */
+        boolean active(){
+            return !frontier.isEmpty() || !changed.isEmpty();
+        }
+
         protected boolean passable(int x, int y){
-            return cost.getCost(team, pathfinder.tiles[x][y]) != impassable;
+            return cost.getCost(team, pathfinder.tiles[x + y * width]) != impassable;
         }
 
         /** Gets targets to pathfind towards. This must run on the main thread. */
@@ -0,0 +1,76 @@
+package mindustry.async;
+
+import arc.func.*;
+import arc.struct.*;
+import arc.util.*;
+import arc.util.async.*;
+import mindustry.gen.*;
+
+import java.util.concurrent.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Calls {@link Building#updateParallel()} for every building whose block sets {@link mindustry.world.Block#parallelUpdate}, spread across a worker pool.
+ * Runs before the entity update, and waits for every worker to finish; the rest of the building update, including anything
+ * that affects other buildings, then happens in updateTile() in the usual order, so the outcome does not depend on thread scheduling.
+ */
+public class BuildingUpdater{
+    /** Below this amount of buildings, they are updated on the main thread, as handing them off costs more than it saves. */
+    public static int minParallel = 256;
+    /** Amount of buildings updated by each task. */
+    private static final int chunkSize = 128;
+    private static final int threads = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+
+    private final Seq<Building> buildings = new Seq<>(false, 64, Building.class);
+    private final Cons<Building> collector = b -> {
+        if(b.block.parallelUpdate && (b.enabled || !b.block.noUpdateDisabled)){
+            buildings.add(b);
+        }
+    };
+    private final Seq<Future<?>> futures = new Seq<>();
+    private @Nullable ExecutorService executor;
+
+    /** Main thread only. */
+    public void update(){
+        if(state.isEditor()) return;
+
+        buildings.clear();
+        Groups.build.each(collector);
+
+        if(buildings.size < minParallel || threads == 1){
+            for(int i = 0; i < buildings.size; i++){
+                buildings.items[i].updateParallel();
+            }
+            return;
+        }
+
+        if(executor == null){
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "Building Update");
+                thread.setDaemon(true);
+                thread.setUncaughtExceptionHandler((t, e) -> Threads.throwAppException(e));
+                return thread;
+            });
+        }
+
+        futures.clear();
+        for(int start = 0; start < buildings.size; start += chunkSize){
+            int from = start, to = Math.min(start + chunkSize, buildings.size);
+            futures.add(executor.submit(() -> {
+                Building[] items = buildings.items;
+                for(int i = from; i < to; i++){
+                    items[i].updateParallel();
+                }
+            }));
+        }
+
+        for(Future<?> future : futures){
+            try{
+                future.get();
+            }catch(Throwable t){
+                throw new RuntimeException(t);
+            }
+        }
+    }
+}
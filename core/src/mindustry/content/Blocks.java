@@ -481,6 +481,7 @@ public class Blocks implements ContentList{
             hasItems = true;
 
             consumes.item(Items.coal, 2);
+            parallelUpdate = true;
         }};
 
         multiPress = new GenericCrafter("multi-press"){{
@@ -498,6 +499,7 @@ public class Blocks implements ContentList{
             consumes.power(1.8f);
             consumes.item(Items.coal, 3);
             consumes.liquid(Liquids.water, 0.1f);
+            parallelUpdate = true;
         }};
 
         siliconSmelter = new GenericCrafter("silicon-smelter"){{
@@ -514,6 +516,7 @@ public class Blocks implements ContentList{
 
             consumes.items(with(Items.coal, 1, Items.sand, 2));
             consumes.power(0.50f);
+            parallelUpdate = true;
         }};
 
         siliconCrucible = new AttributeCrafter("silicon-crucible"){{
@@ -547,6 +550,7 @@ public class Blocks implements ContentList{
 
             consumes.items(with(Items.lead, 1, Items.sand, 1));
             consumes.power(0.60f);
+            parallelUpdate = true;
         }};
 
         plastaniumCompressor = new GenericCrafter("plastanium-compressor"){{
@@ -565,6 +569,7 @@ public class Blocks implements ContentList{
             consumes.liquid(Liquids.oil, 0.25f);
             consumes.power(3f);
             consumes.item(Items.titanium, 2);
+            parallelUpdate = true;
         }};
 
         phaseWeaver = new GenericCrafter("phase-weaver"){{
@@ -582,6 +587,7 @@ public class Blocks implements ContentList{
             consumes.items(with(Items.thorium, 4, Items.sand, 10));
             consumes.power(5f);
             itemCapacity = 20;
+            parallelUpdate = true;
         }};
 
         surgeSmelter = new GenericCrafter("alloy-smelter"){{
@@ -596,6 +602,7 @@ public class Blocks implements ContentList{
 
             consumes.power(4f);
             consumes.items(with(Items.copper, 3, Items.lead, 4, Items.titanium, 2, Items.silicon, 3));
+            parallelUpdate = true;
         }};
 
         cryofluidMixer = new LiquidConverter("cryofluid-mixer"){{
@@ -626,6 +633,7 @@ public class Blocks implements ContentList{
 
             consumes.power(0.20f);
             consumes.items(with(Items.coal, 1, Items.lead, 2, Items.sand, 2));
+            parallelUpdate = true;
         }};
 
         blastMixer = new GenericCrafter("blast-mixer"){{
@@ -637,6 +645,7 @@ public class Blocks implements ContentList{
 
             consumes.items(with(Items.pyratite, 1, Items.sporePod, 1));
             consumes.power(0.40f);
+            parallelUpdate = true;
         }};
 
         melter = new GenericCrafter("melter"){{
@@ -649,6 +658,7 @@ public class Blocks implements ContentList{
 
             consumes.power(1f);
             consumes.item(Items.scrap, 1);
+            parallelUpdate = true;
         }};
 
         separator = new Separator("separator"){{
@@ -699,6 +709,7 @@ public class Blocks implements ContentList{
 
             consumes.item(Items.sporePod, 1);
             consumes.power(0.7f);
+            parallelUpdate = true;
         }};
 
         pulverizer = new GenericCrafter("pulverizer"){{
@@ -716,6 +727,7 @@ public class Blocks implements ContentList{
 
             consumes.item(Items.scrap, 1);
             consumes.power(0.50f);
+            parallelUpdate = true;
         }};
 
         coalCentrifuge = new GenericCrafter("coal-centrifuge"){{
@@ -728,6 +740,7 @@ public class Blocks implements ContentList{
 
             consumes.liquid(Liquids.oil, 0.1f);
             consumes.power(0.7f);
+            parallelUpdate = true;
         }};
 
         incinerator = new Incinerator("incinerator"){{
@@ -1224,12 +1237,14 @@ public class Blocks implements ContentList{
         solarPanel = new SolarGenerator("solar-panel"){{
             requirements(Category.power, with(Items.lead, 10, Items.silicon, 15));
             powerProduction = 0.1f;
+            parallelUpdate = true;
         }};
 
         largeSolarPanel = new SolarGenerator("solar-panel-large"){{
             requirements(Category.power, with(Items.lead, 80, Items.silicon, 110, Items.phaseFabric, 15));
             size = 3;
             powerProduction = 1.3f;
+            parallelUpdate = true;
         }};
 
         thoriumReactor = new NuclearReactor("thorium-reactor"){{
@@ -1269,6 +1284,7 @@ public class Blocks implements ContentList{
             size = 2;
 
             consumes.liquid(Liquids.water, 0.05f).boost();
+            parallelUpdate = true;
         }};
 
         pneumaticDrill = new Drill("pneumatic-drill"){{
@@ -1278,6 +1294,7 @@ public class Blocks implements ContentList{
             size = 2;
 
             consumes.liquid(Liquids.water, 0.06f).boost();
+            parallelUpdate = true;
         }};
 
         laserDrill = new Drill("laser-drill"){{
@@ -1291,6 +1308,7 @@ public class Blocks implements ContentList{
 
             consumes.power(1.10f);
             consumes.liquid(Liquids.water, 0.08f).boost();
+            parallelUpdate = true;
         }};
 
         blastDrill = new Drill("blast-drill"){{
@@ -1312,6 +1330,7 @@ public class Blocks implements ContentList{
 
             consumes.power(3f);
             consumes.liquid(Liquids.water, 0.1f).boost();
+            parallelUpdate = true;
         }};
 
         waterExtractor = new SolidPump("water-extractor"){{
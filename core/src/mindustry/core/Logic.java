@@ -4,6 +4,7 @@ import arc.*;
 import arc.math.*;
 import arc.util.*;
 import mindustry.annotations.Annotations.*;
+import mindustry.async.*;
 import mindustry.core.GameState.*;
 import mindustry.ctype.*;
 import mindustry.game.EventType.*;
@@ -29,6 +30,10 @@ import static mindustry.Vars.*;
  * This class should <i>not</i> call any outside methods to change state of modules, but instead fire events.
  */
 public class Logic implements ApplicationListener{
+    /** Updates the self-contained part of buildings in parallel, before the rest of the entity update. */
+    private final BuildingUpdater buildingUpdater = new BuildingUpdater();
+    /** Wakes up buildings that sleep for a fixed time. */
+    public final SleepScheduler sleepScheduler = new SleepScheduler();
 
     public Logic(){
 
@@ -407,6 +412,8 @@ public class Logic implements ApplicationListener{
                 state.envAttrs.add(state.rules.attributes);
                 Groups.weather.each(w -> state.envAttrs.add(w.weather.attrs, w.opacity));
 
+                sleepScheduler.update();
+                buildingUpdater.update();
                 Groups.update();
             }
 
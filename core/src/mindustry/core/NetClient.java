@@ -48,6 +48,10 @@ public class NetClient implements ApplicationListener{
     private float timeoutTime = 0f;
     /** Last sent client snapshot ID. */
     private int lastSent;
+    /** Highest baseline ID of the server snapshots applied so far. */
+    private int lastSnapshotID = -1;
+    /** Baseline ID of the last snapshot applied for each entity ID, or inverted building position. */
+    private IntIntMap snapshotIDs = new IntIntMap();
 
     /** List of entities that were removed, and need not be added while syncing. */
     private IntSet removed = new IntSet();
@@ -379,15 +383,25 @@ public class NetClient implements ApplicationListener{
     }
 
     @Remote(variants = Variant.one, priority = PacketPriority.low, unreliable = true)
-    public static void entitySnapshot(short amount, byte[] data){
+    public static void entitySnapshot(short amount, int snapshotID, byte[] data){
+        if(!netClient.acceptSnapshot(snapshotID)) return;
+
         try{
             netClient.byteStream.setBytes(data);
             DataInputStream input = netClient.dataStream;
+            boolean skipped = false;
 
             for(int j = 0; j < amount; j++){
                 int id = input.readInt();
                 byte typeID = input.readByte();
 
+                //a newer snapshot of this entity has already been applied; read past it
+                if(!netClient.acceptPayload(id, snapshotID)){
+                    ((Syncc)EntityMapping.map(typeID).get()).readSync(Reads.get(input));
+                    skipped = true;
+                    continue;
+                }
+
                 Syncc entity = Groups.sync.getByID(id);
                 boolean add = false, created = false;
 
@@ -419,16 +433,24 @@ public class NetClient implements ApplicationListener{
                     netClient.addRemovedEntity(entity.id());
                 }
             }
+
+            //the server takes an acknowledgement to mean that every payload in the packet was applied
+            if(!skipped){
+                netClient.acknowledgeSnapshot(snapshotID);
+            }
         }catch(IOException e){
             throw new RuntimeException(e);
         }
     }
 
     @Remote(variants = Variant.both, priority = PacketPriority.low, unreliable = true)
-    public static void blockSnapshot(short amount, byte[] data){
+    public static void blockSnapshot(short amount, int snapshotID, byte[] data){
+        if(!netClient.acceptSnapshot(snapshotID)) return;
+
         try{
             netClient.byteStream.setBytes(data);
             DataInputStream input = netClient.dataStream;
+            boolean skipped = false;
 
             for(int i = 0; i < amount; i++){
                 int pos = input.readInt();
@@ -442,8 +464,23 @@ public class NetClient implements ApplicationListener{
                     Log.warn("Block ID mismatch at @: @ != @. Skipping block snapshot.", tile, tile.build.block.id, block);
                     break;
                 }
+
+                //a newer snapshot of this building has already been applied; read past it into a detached copy
+                if(!netClient.acceptPayload(~pos, snapshotID)){
+                    Building copy = tile.build.block.newBuilding().create(tile.build.block, tile.build.team);
+                    copy.tile(tile);
+                    copy.readAll(Reads.get(input), tile.build.version());
+                    skipped = true;
+                    continue;
+                }
+
                 tile.build.readAll(Reads.get(input), tile.build.version());
             }
+
+            //skipped buildings must be sent again, so incomplete snapshots are not acknowledged
+            if(input.available() == 0 && !skipped){
+                netClient.acknowledgeSnapshot(snapshotID);
+            }
         }catch(Exception e){
             Log.err(e);
         }
@@ -530,6 +567,46 @@ public class NetClient implements ApplicationListener{
         Core.app.post(ui.loadfrag::hide);
     }
 
+    /**
+     * Snapshots with a baseline ID may arrive out of order. Entity and block packets, and the packets of one sync, share a sequence,
+     * so an older packet is still applied, except for the entities and buildings that a newer one already updated; see {@link #acceptPayload(int, int)}.
+     * Packets too old to be waited on by the server are dropped. Snapshots without an ID (-1) are always applied.
+     */
+    private boolean acceptSnapshot(int id){
+        if(id == -1) return true;
+        if(id <= lastSnapshotID - SnapshotBaseline.maxPending) return false;
+
+        if(id > lastSnapshotID){
+            lastSnapshotID = id;
+
+            //entries that old can no longer be overtaken by a packet that is accepted
+            if(snapshotIDs.size > 4096){
+                IntSeq stale = new IntSeq();
+                for(var entry : snapshotIDs){
+                    if(entry.value <= lastSnapshotID - SnapshotBaseline.maxPending) stale.add(entry.key);
+                }
+                for(int i = 0; i < stale.size; i++){
+                    snapshotIDs.remove(stale.get(i), 0);
+                }
+            }
+        }
+        return true;
+    }
+
+    /** @return whether a payload of a snapshot is newer than the last one applied for its key, which is then set to it. */
+    private boolean acceptPayload(int key, int id){
+        if(id == -1) return true;
+        if(snapshotIDs.get(key, -1) > id) return false;
+        snapshotIDs.put(key, id);
+        return true;
+    }
+
+    private void acknowledgeSnapshot(int id){
+        if(id != -1){
+            Call.snapshotAck(id);
+        }
+    }
+
     private void reset(){
         net.setClientLoaded(false);
         removed.clear();
@@ -538,6 +615,8 @@ public class NetClient implements ApplicationListener{
         quietReset = false;
         quiet = false;
         lastSent = 0;
+        lastSnapshotID = -1;
+        snapshotIDs.clear();
 
         Groups.clear();
         ui.chatfrag.clearMessages();
@@ -44,6 +44,8 @@ public class NetServer implements ApplicationListener{
 
     public final Administration admins = new Administration();
     public final CommandHandler clientCommands = new CommandHandler("/");
+    /** Shares serialized map data between players that join at around the same time. */
+    public final WorldStreamCache worldStream = new WorldStreamCache();
     public TeamAssigner assigner = (player, players) -> {
         if(state.rules.pvp){
             //find team with minimum amount of players and auto-assign player to that.
@@ -74,6 +76,43 @@ public class NetServer implements ApplicationListener{
     private ReusableByteOutStream syncStream = new ReusableByteOutStream();
     /** Data stream for writing player sync data to. */
     private DataOutputStream dataStream = new DataOutputStream(syncStream);
+    /** Whether entity snapshots are encoded once per sync and shared by every player, instead of being written for each player separately. */
+    public boolean sharedSnapshots = true;
+    /**
+     * Whether entities away from a player's view are synced less often. Only applies to shared snapshots.
+     * Entities are always sent as soon as a player has not seen them before.
+     */
+    public boolean interestManagement = true;
+    /** Entities within this distance of a player's view, in world units, are synced every snapshot. */
+    public float interestMargin = tilesize * 8f;
+    /** Sync intervals, in snapshots, of entities within a screen of a player's view, and of entities further away. */
+    public int nearSyncInterval = 3, farSyncInterval = 10;
+    /**
+     * Whether unchanged entities and buildings are left out of snapshots, based on what each client has acknowledged; see {@link SnapshotBaseline}.
+     * Only applies to shared snapshots.
+     */
+    public boolean deltaSnapshots = true;
+    /** Whether the shared snapshot has to be encoded again before it is sent. Set at the start of every sync. */
+    private boolean snapshotDirty = true;
+    /** Encoded state snapshot data, shared by every player. */
+    private byte[] stateData;
+    /** Sync payloads of every entity, written back to back. */
+    private ReusableByteOutStream entityBuffer = new ReusableByteOutStream();
+    private DataOutputStream entityStream = new DataOutputStream(entityBuffer);
+    /** Start offset of each entity's payload in {@link #entityBuffer}, followed by the end of the last one. */
+    private IntSeq entityOffsets = new IntSeq();
+    /** Entities whose payloads are in {@link #entityBuffer}, in order, and the hashes of their payloads. */
+    private Seq<Syncc> entities = new Seq<>();
+    private IntSeq entityKeys = new IntSeq(), entityHashes = new IntSeq();
+    /** Building payloads of the last block snapshot, laid out like the entity payloads; buildings are keyed by their inverted position. */
+    private ReusableByteOutStream blockBuffer = new ReusableByteOutStream();
+    private DataOutputStream blockStream = new DataOutputStream(blockBuffer);
+    private IntSeq blockOffsets = new IntSeq(), blockKeys = new IntSeq(), blockHashes = new IntSeq();
+    /** Indices of the payloads selected for a connection. */
+    private IntSeq selected = new IntSeq();
+    /** Entity snapshot packets assembled from the shared payloads, and the amount of entities in each. */
+    private Seq<byte[]> entityPackets = new Seq<>();
+    private IntSeq entityPacketCounts = new IntSeq();
     /** Packet handlers for custom types of messages. */
     private ObjectMap<String, Seq<Cons2<Player, String>>> customPacketHandlers = new ObjectMap<>();
 
@@ -495,14 +534,11 @@ public class NetServer implements ApplicationListener{
     }
 
     public void sendWorldData(Player player){
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        DeflaterOutputStream def = new FastDeflaterOutputStream(stream);
-        NetworkIO.writeWorld(player, def);
-        WorldStream data = new WorldStream();
-        data.stream = new ByteArrayInputStream(stream.toByteArray());
-        player.con.sendStream(data);
+        //the client starts over with a new world
+        player.con.baseline.clear();
+        player.con.syncedEntities.clear();
 
-        debug("Packed @ bytes of world data.", stream.size());
+        worldStream.send(player);
     }
 
     public void addPacketHandler(String type, Cons2<Player, String> handler){
@@ -553,6 +589,14 @@ public class NetServer implements ApplicationListener{
         return Float.isInfinite(f) || Float.isNaN(f);
     }
 
+    /** Acknowledges that a snapshot packet with a baseline ID has been received and applied; see {@link SnapshotBaseline}. */
+    @Remote(targets = Loc.client, unreliable = true, priority = PacketPriority.low)
+    public static void snapshotAck(Player player, int id){
+        if(player.con != null){
+            player.con.baseline.acknowledge(id);
+        }
+    }
+
     @Remote(targets = Loc.client, unreliable = true)
     public static void clientSnapshot(
         Player player,
@@ -821,6 +865,11 @@ public class NetServer implements ApplicationListener{
 
     /** Sends a block snapshot to all players. */
     public void writeBlockSnapshots() throws IOException{
+        if(sharedSnapshots && deltaSnapshots){
+            writeBlockDeltas();
+            return;
+        }
+
         syncStream.reset();
 
         short sent = 0;
@@ -834,7 +883,7 @@ public class NetServer implements ApplicationListener{
 
             if(syncStream.size() > maxSnapshotSize){
                 dataStream.close();
-                Call.blockSnapshot(sent, syncStream.toByteArray());
+                Call.blockSnapshot(sent, -1, syncStream.toByteArray());
                 sent = 0;
                 syncStream.reset();
             }
@@ -842,11 +891,16 @@ public class NetServer implements ApplicationListener{
 
         if(sent > 0){
             dataStream.close();
-            Call.blockSnapshot(sent, syncStream.toByteArray());
+            Call.blockSnapshot(sent, -1, syncStream.toByteArray());
         }
     }
 
     public void writeEntitySnapshot(Player player) throws IOException{
+        if(sharedSnapshots){
+            writeSharedSnapshot(player);
+            return;
+        }
+
         byte tps = (byte)Math.min(Core.graphics.getFramesPerSecond(), 255);
         syncStream.reset();
         int activeTeams = (byte)state.teams.present.count(t -> t.cores.size > 0);
@@ -881,7 +935,7 @@ public class NetServer implements ApplicationListener{
 
             if(syncStream.size() > maxSnapshotSize){
                 dataStream.close();
-                Call.entitySnapshot(player.con, (short)sent, syncStream.toByteArray());
+                Call.entitySnapshot(player.con, (short)sent, -1, syncStream.toByteArray());
                 sent = 0;
                 syncStream.reset();
             }
@@ -890,9 +944,217 @@ public class NetServer implements ApplicationListener{
         if(sent > 0){
             dataStream.close();
 
-            Call.entitySnapshot(player.con, (short)sent, syncStream.toByteArray());
+            Call.entitySnapshot(player.con, (short)sent, -1, syncStream.toByteArray());
+        }
+
+    }
+
+    /** Sends the shared snapshot to a player, encoding it first if this has not been done yet during the current sync. */
+    void writeSharedSnapshot(Player player) throws IOException{
+        if(snapshotDirty){
+            encodeSnapshot();
+            snapshotDirty = false;
+        }
+
+        byte tps = (byte)Math.min(Core.graphics.getFramesPerSecond(), 255);
+        Call.stateSnapshot(player.con, state.wavetime, state.wave, state.enemies, state.serverPaused, state.gameOver, universe.seconds(), tps, stateData);
+
+        if(!interestManagement && !deltaSnapshots){
+            for(int i = 0; i < entityPackets.size; i++){
+                Call.entitySnapshot(player.con, (short)entityPacketCounts.get(i), -1, entityPackets.get(i));
+            }
+            return;
+        }
+
+        //select the entities this player is interested in
+        NetConnection con = player.con;
+        int sync = ++con.syncCount;
+        selected.clear();
+
+        for(int i = 0; i < entities.size; i++){
+            Syncc entity = entities.get(i);
+            if(interestManagement){
+                int last = con.syncedEntities.get(entity.id(), -1);
+                if(last != -1 && sync - last < syncInterval(con, entity)) continue;
+                con.syncedEntities.put(entity.id(), sync);
+            }
+            selected.add(i);
+        }
+
+        sendPayloads(con, entityBuffer.getBytes(), entityOffsets, entityKeys, entityHashes, false);
+
+        //forget entities that no longer exist
+        if(con.syncedEntities.size > entities.size * 2 + 64){
+            IntSeq removed = new IntSeq();
+            for(var entry : con.syncedEntities){
+                if(Groups.sync.getByID(entry.key) == null) removed.add(entry.key);
+            }
+            for(int i = 0; i < removed.size; i++){
+                con.syncedEntities.remove(removed.get(i), 0);
+            }
+        }
+    }
+
+    /**
+     * Encodes the payload of every synced building once, and sends each connection the ones that changed since the state it acknowledged.
+     * Every building is encoded, since state that blocks write themselves, like crafting progress, changes without any notice.
+     */
+    void writeBlockDeltas() throws IOException{
+        blockBuffer.reset();
+        blockOffsets.clear();
+        blockKeys.clear();
+        blockHashes.clear();
+        Writes writes = new Writes(blockStream);
+
+        for(Building entity : Groups.build){
+            if(!entity.block.sync) continue;
+
+            int offset = blockBuffer.size();
+            blockOffsets.add(offset);
+            blockStream.writeInt(entity.pos());
+            blockStream.writeShort(entity.block.id);
+            entity.writeAll(writes);
+            blockKeys.add(~entity.pos());
+            blockHashes.add(SnapshotBaseline.hash(blockBuffer.getBytes(), offset, blockBuffer.size() - offset));
         }
+        blockOffsets.add(blockBuffer.size());
+
+        for(Player player : Groups.player){
+            NetConnection con = player.con;
+            if(player.isLocal() || con == null || !con.isConnected() || !con.hasConnected) continue;
 
+            selected.clear();
+            for(int i = 0; i < blockKeys.size; i++){
+                selected.add(i);
+            }
+            sendPayloads(con, blockBuffer.getBytes(), blockOffsets, blockKeys, blockHashes, true);
+        }
+    }
+
+    /**
+     * Sends the {@link #selected} pre-encoded payloads to a connection, split into packets.
+     * With delta snapshots, payloads that match the connection's acknowledged baseline are left out.
+     */
+    private void sendPayloads(NetConnection con, byte[] bytes, IntSeq offsets, IntSeq keys, IntSeq hashes, boolean blocks){
+        SnapshotBaseline baseline = con.baseline;
+        int sent = 0;
+        syncStream.reset();
+
+        for(int j = 0; j < selected.size; j++){
+            int i = selected.get(j);
+            if(deltaSnapshots){
+                if(!baseline.changed(keys.get(i), hashes.get(i))) continue;
+                baseline.add(keys.get(i), hashes.get(i));
+            }
+
+            int offset = offsets.get(i);
+            syncStream.write(bytes, offset, offsets.get(i + 1) - offset);
+            sent++;
+
+            if(syncStream.size() > maxSnapshotSize){
+                sendPacket(con, sent, blocks);
+                sent = 0;
+                syncStream.reset();
+            }
+        }
+
+        if(sent > 0){
+            sendPacket(con, sent, blocks);
+        }
+
+        //keys of removed entities and buildings pile up; start over from a full snapshot once there are too many
+        if(baseline.size() > (keys.size + 256) * 4){
+            baseline.clear();
+        }
+    }
+
+    private void sendPacket(NetConnection con, int amount, boolean blocks){
+        int id = deltaSnapshots ? con.baseline.finish() : -1;
+        if(blocks){
+            Call.blockSnapshot(con, (short)amount, id, syncStream.toByteArray());
+        }else{
+            Call.entitySnapshot(con, (short)amount, id, syncStream.toByteArray());
+        }
+    }
+
+    /** @return how often an entity is synced to a connection, in snapshots, based on its distance to the connection's view. */
+    int syncInterval(NetConnection con, Syncc entity){
+        if(con.viewWidth <= 0f || entity instanceof Player || !(entity instanceof Posc pos) || (con.player != null && con.player.unit() == entity)){
+            return 1;
+        }
+
+        //distance from the edge of the view rectangle
+        float dst = Math.max(
+            Math.abs(pos.x() - con.viewX) - con.viewWidth / 2f,
+            Math.abs(pos.y() - con.viewY) - con.viewHeight / 2f
+        );
+
+        return dst <= interestMargin ? 1 : dst <= Math.max(con.viewWidth, con.viewHeight) ? nearSyncInterval : farSyncInterval;
+    }
+
+    /** Encodes the state and sync data of every entity once, and splits the entity payloads into packets like {@link #writeEntitySnapshot(Player)} does. */
+    void encodeSnapshot() throws IOException{
+        syncStream.reset();
+        int activeTeams = (byte)state.teams.present.count(t -> t.cores.size > 0);
+
+        dataStream.writeByte(activeTeams);
+        dataWrites.output = dataStream;
+
+        for(TeamData data : state.teams.present){
+            if(data.cores.size > 0){
+                dataStream.writeByte(data.team.id);
+                data.cores.first().items.write(dataWrites);
+            }
+        }
+
+        dataStream.close();
+        stateData = syncStream.toByteArray();
+
+        entityBuffer.reset();
+        entityOffsets.clear();
+        entities.clear();
+        entityKeys.clear();
+        entityHashes.clear();
+        Writes writes = new Writes(entityStream);
+
+        for(Syncc entity : Groups.sync){
+            int offset = entityBuffer.size();
+            entityOffsets.add(offset);
+            entities.add(entity);
+            entityStream.writeInt(entity.id());
+            entityStream.writeByte(entity.classId());
+            entity.writeSync(writes);
+            entityKeys.add(entity.id());
+            if(deltaSnapshots){
+                entityHashes.add(SnapshotBaseline.hash(entityBuffer.getBytes(), offset, entityBuffer.size() - offset));
+            }
+        }
+        entityOffsets.add(entityBuffer.size());
+
+        entityPackets.clear();
+        entityPacketCounts.clear();
+
+        //packets are assembled per player instead
+        if(interestManagement || deltaSnapshots) return;
+
+        //packets are shared too; they are never modified after being sent
+        int start = 0;
+        for(int i = 0; i < entityOffsets.size - 1; i++){
+            int end = entityOffsets.get(i + 1);
+            if(end - entityOffsets.get(start) > maxSnapshotSize || i == entityOffsets.size - 2){
+                addPacket(start, i + 1);
+                start = i + 1;
+            }
+        }
+    }
+
+    /** Adds a packet containing the pre-encoded payloads of the entities in [from, to). */
+    private void addPacket(int from, int to){
+        int offset = entityOffsets.get(from);
+        byte[] packet = new byte[entityOffsets.get(to) - offset];
+        System.arraycopy(entityBuffer.getBytes(), offset, packet, 0, packet.length);
+        entityPackets.add(packet);
+        entityPacketCounts.add(to - from);
     }
 
     String fixName(String name){
@@ -945,6 +1207,8 @@ public class NetServer implements ApplicationListener{
     }
 
     void sync(){
+        snapshotDirty = true;
+
         try{
             Groups.player.each(p -> !p.isLocal(), player -> {
                 if(player.con == null || !player.con.isConnected()){
@@ -18,7 +18,6 @@ import mindustry.gen.*;
 import mindustry.io.*;
 import mindustry.maps.*;
 import mindustry.maps.filters.*;
-import mindustry.maps.filters.GenerateFilter.*;
 import mindustry.type.*;
 import mindustry.world.*;
 import mindustry.world.blocks.environment.*;
@@ -567,14 +566,11 @@ public class World{
             Seq<GenerateFilter> filters = map.filters();
 
             if(!filters.isEmpty()){
-                //input for filter queries
-                GenerateInput input = new GenerateInput();
-
                 for(GenerateFilter filter : filters){
                     filter.randomize();
-                    input.begin(width(), height(), (x, y) -> tiles.getn(x, y));
-                    filter.apply(tiles, input);
                 }
+
+                new FilterPipeline().apply(tiles, filters);
             }
 
             super.end();
@@ -4,17 +4,18 @@ import arc.func.*;
 import arc.math.*;
 import arc.math.geom.*;
 import arc.struct.*;
-import arc.util.*;
+import mindustry.annotations.Annotations.*;
 import mindustry.content.*;
 import mindustry.game.*;
+import mindustry.gen.*;
 import mindustry.world.*;
-import mindustry.world.blocks.environment.*;
-import mindustry.world.blocks.power.*;
 
-import static mindustry.Vars.world;
+import static mindustry.Vars.*;
 
 /**
  * Class that holds data about selected tiles. It handles rotation of selection, clamping copying and pasting.
+ * Tiles are packed into a long each (see {@link CopyTileStruct}); building configs are kept in a sparse side table.
+ * Rotating and flipping remaps indices in these arrays instead of moving objects around.
  */
 public class Copy{
 
@@ -28,11 +29,13 @@ public class Copy{
 
     private final Point2 tmp = new Point2();
 
-    private CTile[][] main, rotated; // to make rotation faster differently composed space is pre-allocated
-    private final Seq<CTile> pool = new Seq<>(); // to reuse tiles
+    private long[] main = {}, rotated = {}; // row-major packed tiles; rotated is pre-allocated scratch space for transposing
+    private IntMap<Object> configs = new IntMap<>(), rotatedConfigs = new IntMap<>(); // building configs, keyed by index into main
 
-    public Seq<Point2> lines = new Seq<>(), linePool = new Seq<>();
-    final int lineLimit = 100000;
+    /** outline segments of the visible part of the selection, as pairs of packed points relative to the selection offset. */
+    public IntSeq lines = new IntSeq();
+    private int lineX1 = -1, lineY1 = -1, lineX2 = -1, lineY2 = -1;
+    private boolean linesDirty = true;
 
     private final Template[] templates = {
     new Template(0, 1, 0, 1, 1, 1),
@@ -40,7 +43,7 @@ public class Copy{
     };
 
     public Copy(){
-        clear(); // to init the min and rotated
+        clear(); // to init the main and rotated
     }
 
     public void setOrigin(int x, int y){
@@ -77,13 +80,22 @@ public class Copy{
         resize();
 
         loop(w, h, (x, y) -> {
-            CTile t = pool.pop(CTile::new);
-
-            t.copy(world.tile(x + dx, y + dy));
-            main[y][x] = t;
+            Tile t = world.tile(x + dx, y + dy);
+            int index = index(x, y);
+            boolean center = t.isCenter();
+
+            main[index] = CopyTile.get(t.floorID(), t.overlayID(), t.blockID(),
+                center && t.build != null ? (byte)t.build.team.id : 0,
+                center && t.build != null ? t.build.rotation & 3 : 0,
+                center
+            );
+
+            if(center && t.build != null){
+                Object config = t.build.config();
+                if(config != null) configs.put(index, config);
+            }
         });
 
-
         outlines();
     }
 
@@ -98,9 +110,26 @@ public class Copy{
         // we don't want garbage blocks, but also don't want to remove new blocks
         loop(stx, sty, edx, edy, (x, y) -> world.tile(x, y).remove());
         // paste everything but config
-        loop(stx, sty, edx, edy, (x, y) -> main[y - dy][x - dx].paste(world.tile(x, y)));
+        loop(stx, sty, edx, edy, (x, y) -> {
+            long t = main[index(x - dx, y - dy)];
+            Tile tile = world.tile(x, y);
+
+            if(CopyTile.center(t)){
+                tile.setBlock(content.block(CopyTile.block(t)), Team.get(CopyTile.team(t)), CopyTile.rotation(t));
+            }
+
+            tile.setFloor(content.block(CopyTile.floor(t)).asFloor());
+            tile.setOverlay(content.block(CopyTile.overlay(t)));
+        });
         // final paste, because of power nodes issues
-        loop(stx, sty, edx, edy, (x, y) -> main[y - dy][x - dx].pasteConfig(world.tile(x, y)));
+        loop(stx, sty, edx, edy, (x, y) -> {
+            int index = index(x - dx, y - dy);
+            Tile tile = world.tile(x, y);
+
+            if(CopyTile.center(main[index]) && tile.build != null){
+                tile.build.configure(configs.get(index));
+            }
+        });
     }
 
     public void rotR(){
@@ -130,7 +159,6 @@ public class Copy{
         }
     }
 
-
     public void flipY(boolean alone){
         loop(w, h / 2, (x, y) -> swap(x, y, x, h - y - 1));
 
@@ -144,73 +172,97 @@ public class Copy{
         }
     }
 
+    /** Marks the outlines for recomputation; they are only computed for the visible region, on demand. */
     private void outlines(){
-        if(w * h > lineLimit) return;
+        linesDirty = true;
+    }
 
-        clearLines();
+    /**
+     * Computes the outline segments of the part of the selection that lies in the specified rectangle of map tiles.
+     * Results are cached until the selection or the region changes.
+     */
+    public IntSeq lines(int x1, int y1, int x2, int y2){
+        x1 = Mathf.clamp(x1 - dx, 0, w);
+        y1 = Mathf.clamp(y1 - dy, 0, h);
+        x2 = Mathf.clamp(x2 - dx + 1, 0, w);
+        y2 = Mathf.clamp(y2 - dy + 1, 0, h);
 
-        loop(w, h, (x, y) -> {
+        if(!linesDirty && x1 == lineX1 && y1 == lineY1 && x2 == lineX2 && y2 == lineY2){
+            return lines;
+        }
+
+        linesDirty = false;
+        lineX1 = x1;
+        lineY1 = y1;
+        lineX2 = x2;
+        lineY2 = y2;
+        lines.clear();
+
+        loop(x1, y1, x2, y2, (x, y) -> {
             for(Template t : templates){
                 tmp.set(x, y).add(t.offset);
 
                 if(!containsRaw(tmp.x, tmp.y)) continue;
-                if(main[y][x].equal(main[tmp.y][tmp.x])) continue;
+                if(top(main[index(x, y)]) == top(main[index(tmp.x, tmp.y)])) continue;
 
                 addLinePoint(x, y, t.a);
                 addLinePoint(x, y, t.b);
             }
         });
+
+        return lines;
     }
 
     void clearLines(){
-        linePool.addAll(lines);
         lines.clear();
+        linesDirty = true;
     }
 
     private void addLinePoint(int x, int y, Point2 o){
-        Point2 p = linePool.pop(Point2::new);
-        tmp.set(x, y).add(o);
-        p.set(tmp);
-        lines.add(p);
+        lines.add(Point2.pack(x + o.x, y + o.y));
     }
 
     public void flipMultiBlock(int x, int y, int dx, int dy){
-        CTile a = main[y][x];
-        if(a.doNotFlip()) return;
-
+        int ai = index(x, y);
+        long a = main[ai];
+        if(doNotFlip(a)) return;
 
         // can happen
         if(x == 0 || y == 0){
-            a.build.block = null;
+            main[ai] = CopyTile.center(a, false);
             return;
         }
 
-        CTile b = main[y + dy][x + dx];
-        CTile.Build tmp = a.build;
-        a.build = b.build;
-        b.build = tmp;
+        // swap building data, leaving floor and overlay in place
+        int bi = index(x + dx, y + dy);
+        long b = main[bi];
+        main[ai] = withBuild(a, b);
+        main[bi] = withBuild(b, a);
+
+        Object ac = configs.remove(ai), bc = configs.remove(bi);
+        if(bc != null) configs.put(ai, bc);
+        if(ac != null) configs.put(bi, ac);
     }
 
     public void flipConnections(int x, int y, int dx, int dy){
-        CTile a = main[y][x];
-        boolean noFlip = a.doNotFlip();
+        long a = main[index(x, y)];
+        boolean noFlip = doNotFlip(a);
+        Object config = configs.get(index(x, y));
 
         // this is driving me crazy, reason is that if both blocks have to be flipped or both not
         // do nothing, if a is flipped, go opposite of flip, if reverse go in direction of flip
-        if(a.build.config instanceof Point2 p){
+        if(config instanceof Point2 p){
             if(!containsRaw(x + p.x, y + p.y)) return;
-            CTile t = main[y + p.y][x + p.x];
-            boolean oNoFlip = t.doNotFlip();
+            boolean oNoFlip = doNotFlip(main[index(x + p.x, y + p.y)]);
             if(oNoFlip && !noFlip){
                 p.sub(dx, dy);
             }else if(!oNoFlip && noFlip){
                 p.add(dx, dy);
             }
-        }else if(a.build.config instanceof Point2[] points){
+        }else if(config instanceof Point2[] points){
             for(Point2 p : points){
                 if(!containsRaw(x + p.x, y + p.y)) continue;
-                CTile t = main[y + p.y][x + p.x];
-                boolean oNoFlip = t.doNotFlip();
+                boolean oNoFlip = doNotFlip(main[index(x + p.x, y + p.y)]);
                 if(oNoFlip && !noFlip){
                     p.sub(dx, dy);
                 }else if(!oNoFlip && noFlip){
@@ -220,58 +272,76 @@ public class Copy{
         }
     }
 
-
     public void flipD(){
         config(p -> p.set(p.y, p.x), 1);
 
-        loop(w, h, (x, y) -> swap(x, y, y, x, main, rotated));
+        // transpose: (x, y) in a w*h grid becomes (y, x) in a h*w grid
+        rotatedConfigs.clear();
+        loop(w, h, (x, y) -> {
+            int from = index(x, y), to = x * h + y;
+            rotated[to] = main[from];
+            Object config = configs.get(from);
+            if(config != null) rotatedConfigs.put(to, config);
+        });
 
         int t = w;
         w = h;
         h = t;
 
-        CTile[][] u = main;
+        long[] u = main;
         main = rotated;
         rotated = u;
+
+        IntMap<Object> c = configs;
+        configs = rotatedConfigs;
+        rotatedConfigs = c;
     }
 
     private void config(Cons<Point2> con, int shift){
-        loop(w, h, t -> {
-            t.build.rotation += shift;
+        for(int i = 0; i < w * h; i++){
+            main[i] = CopyTile.rotation(main[i], (CopyTile.rotation(main[i]) + shift) & 3);
+        }
 
-            if(t.build.config instanceof Point2 p){
+        for(var entry : configs){
+            if(entry.value instanceof Point2 p){
                 con.get(p);
-            }else if(t.build.config instanceof Point2[] ps){
+            }else if(entry.value instanceof Point2[] ps){
                 for(Point2 p : ps){
                     con.get(p);
                 }
             }
-        });
+        }
     }
 
     private void resize(){
         w = fw;
         h = fh;
-        // collect garbage
-        if(main != null && main.length != 0) loop(main[0].length, main.length, t -> pool.add(t));
 
-        main = new CTile[h][w];
-        rotated = new CTile[w][h];
-    }
+        // arrays are only reallocated when they grow
+        if(main.length < w * h){
+            main = new long[w * h];
+            rotated = new long[w * h];
+        }
 
-    private void swap(int sx, int sy, int dx, int dy){
-        swap(sx, sy, dx, dy, main, main);
+        configs.clear();
+        rotatedConfigs.clear();
+        outlines();
     }
 
-    // swap swaps value from one 2D array with value of another
-    private void swap(int sx, int sy, int dx, int dy, CTile[][] src, CTile[][] dst){
-        CTile t = dst[dy][dx];
-        dst[dy][dx] = src[sy][sx];
-        src[sy][sx] = t;
+    private int index(int x, int y){
+        return x + y * w;
     }
 
-    private void loop(int w, int h, Cons<CTile> cons){
-        loop(0, 0, w, h, (x, y) -> cons.get(main[y][x]));
+    private void swap(int sx, int sy, int dx, int dy){
+        int a = index(sx, sy), b = index(dx, dy);
+
+        long t = main[a];
+        main[a] = main[b];
+        main[b] = t;
+
+        Object ac = configs.remove(a), bc = configs.remove(b);
+        if(bc != null) configs.put(a, bc);
+        if(ac != null) configs.put(b, ac);
     }
 
     private void loop(int w, int h, Looper looper){
@@ -323,59 +393,32 @@ public class Copy{
         return Mathf.clamp(y, 0, world.height() - 1);
     }
 
-    /** Data container used for transporting copy data. */
-    private static class CTile{
-        Block overlay;
-        Floor floor;
-        Build build = new Build();
-
-        boolean equal(CTile o){
-            return top().equals(o.top());
-        }
-
-        Block top(){
-            return build.trueBlock.solid || build.trueBlock.breakable ? build.trueBlock : !overlay.useColor ? floor : overlay;
-        }
-
-        void copy(Tile t){
-            floor = t.floor();
-            overlay = t.overlay();
-            build.block = t.block();
-            build.trueBlock = build.block;
-            if(!t.isCenter()){
-                build.block = null;
-            }else if(t.build != null){
-                build.team = t.build.team();
-                build.config = t.build.config();
-                build.rotation = t.build.rotation();
-            }
-        }
-
-        void paste(Tile t){
-            if(build.block != null){
-                t.setBlock(build.block, build.team, build.rotation);
-            }
-
-            t.setFloor(floor);
-            t.setOverlay(overlay);
-        }
+    /** @return the ID of the block that is visible on top of a packed tile; used for outlines. */
+    private static short top(long tile){
+        Block block = content.block(CopyTile.block(tile));
+        Block overlay = content.block(CopyTile.overlay(tile));
+        return block.solid || block.breakable ? block.id : !overlay.useColor ? CopyTile.floor(tile) : overlay.id;
+    }
 
-        boolean doNotFlip(){
-            return build.block == null || build.block.size % 2 == 1;
-        }
+    private static boolean doNotFlip(long tile){
+        return !CopyTile.center(tile) || content.block(CopyTile.block(tile)).size % 2 == 1;
+    }
 
-        void pasteConfig(Tile t){
-            if(t.build != null){
-                t.build.configure(build.config);
-            }
-        }
+    /** @return the terrain of the first tile with the building data of the second. */
+    private static long withBuild(long terrain, long build){
+        return CopyTile.get(CopyTile.floor(terrain), CopyTile.overlay(terrain), CopyTile.block(build), CopyTile.team(build), CopyTile.rotation(build), CopyTile.center(build));
+    }
 
-        private static class Build{
-            Block block, trueBlock;
-            int rotation;
-            Object config;
-            Team team;
-        }
+    /** Data container used for transporting copy data. */
+    @Struct
+    class CopyTileStruct{
+        short floor;
+        short overlay;
+        /** block covering this tile; only placed when this tile is the center */
+        short block;
+        byte team;
+        @StructField(2) int rotation;
+        boolean center;
     }
 
     static class Template{
@@ -1,41 +1,122 @@
 package mindustry.editor;
 
 import arc.struct.*;
+import arc.util.*;
 import mindustry.annotations.Annotations.*;
 import mindustry.game.*;
 import mindustry.gen.*;
 import mindustry.world.*;
 import mindustry.world.blocks.environment.*;
 
+import java.io.*;
+import java.util.zip.*;
+
 import static mindustry.Vars.*;
 
 public class DrawOperation{
-    private LongSeq array = new LongSeq();
+    private static final OpType[] replayOrder = {OpType.floor, OpType.overlay, OpType.block, OpType.team, OpType.rotation};
+
+    /** ops recorded while drawing; null once this operation is compacted. */
+    private @Nullable LongSeq array = new LongSeq();
+    /** tile/type pairs already recorded in this operation; null once this operation is compacted. */
+    private @Nullable IntSet written = new IntSet();
+    /** delta and run-length encoded ops, possibly deflated. */
+    private @Nullable byte[] packed;
+    private boolean compressed;
+    private int size;
 
     public boolean isEmpty(){
-        return array.isEmpty();
+        return size == 0;
     }
 
     public void addOperation(long op){
-        array.add(op);
+        //only the first write to a tile/type pair matters: undo applies it last, overwriting any later ones
+        if(written.add(key(op))){
+            array.add(op);
+            size++;
+        }
     }
 
     public void undo(){
-        for(int i = array.size - 1; i >= 0; i--){
-            updateTile(i);
-        }
+        LongSeq array = ops();
+        replay(array, true);
+        store(array);
     }
 
     public void redo(){
-        for(int i = 0; i < array.size; i++){
-            updateTile(i);
+        LongSeq array = ops();
+        replay(array, false);
+        store(array);
+    }
+
+    /** Encodes the recorded ops and releases the recording buffers. Called once the operation is complete. */
+    public void compact(){
+        if(array == null) return;
+        packed = encode(array);
+        array = null;
+        written = null;
+    }
+
+    /** Deflates the encoded ops. Used for history entries that are unlikely to be replayed soon. */
+    public void compress(){
+        if(packed == null || compressed) return;
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try{
+            deflater.setInput(packed);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(packed.length / 2 + 16);
+            byte[] buffer = new byte[4096];
+            while(!deflater.finished()){
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            packed = out.toByteArray();
+            compressed = true;
+        }finally{
+            deflater.end();
         }
     }
 
-    private void updateTile(int i){
-        long l = array.get(i);
-        array.set(i, TileOp.get(TileOp.x(l), TileOp.y(l), TileOp.type(l), getTile(editor.tile(TileOp.x(l), TileOp.y(l)), TileOp.type(l))));
-        setTile(editor.tile(TileOp.x(l), TileOp.y(l)), TileOp.type(l), TileOp.value(l));
+    /** @return approximate amount of memory used by this operation's data, in bytes. */
+    public long memory(){
+        return array != null ? array.items.length * 8L + written.size * 8L : packed.length;
+    }
+
+    private LongSeq ops(){
+        if(array != null) return array;
+        return decode(compressed ? inflate(packed) : packed, size);
+    }
+
+    private void store(LongSeq ops){
+        if(array != null) return;
+        packed = encode(ops);
+        compressed = false;
+    }
+
+    /**
+     * Applies every op inside a single load scope, swapping each op's value with the current one.
+     * Ops are applied grouped by type, so that floors are set before overlays, and blocks before their team and rotation;
+     * the relative order of ops of the same type is kept. Renderer chunks are marked once per op instead of per linked tile.
+     */
+    private void replay(LongSeq array, boolean reverse){
+        editor.load(() -> {
+            for(OpType type : replayOrder){
+                byte ordinal = (byte)type.ordinal();
+
+                for(int j = 0; j < array.size; j++){
+                    int i = reverse ? array.size - 1 - j : j;
+                    long l = array.get(i);
+                    if(TileOp.type(l) != ordinal) continue;
+
+                    Tile tile = editor.tile(TileOp.x(l), TileOp.y(l));
+                    array.set(i, TileOp.get(TileOp.x(l), TileOp.y(l), ordinal, getTile(tile, ordinal)));
+
+                    int radius = type == OpType.block ? Math.max(tile.block().size, content.block(TileOp.value(l)).size) : 0;
+                    setTile(tile, ordinal, TileOp.value(l));
+                    editor.renderer.updateRegion(tile.x - radius, tile.y - radius, tile.x + radius, tile.y + radius);
+                }
+            }
+        });
     }
 
     short getTile(Tile tile, byte type){
@@ -53,26 +134,148 @@ public class DrawOperation{
         throw new IllegalArgumentException("Invalid type.");
     }
 
+    /** Sets a value of a tile. Must be called inside {@link MapEditor#load(Runnable)}. */
     void setTile(Tile tile, byte type, short to){
-        editor.load(() -> {
-            if(type == OpType.floor.ordinal()){
-                tile.setFloor((Floor)content.block(to));
-            }else if(type == OpType.block.ordinal()){
-                tile.getLinkedTiles(t -> editor.renderer.updatePoint(t.x, t.y));
-
-                Block block = content.block(to);
-                tile.setBlock(block, tile.team(), tile.build == null ? 0 : tile.build.rotation);
-
-                tile.getLinkedTiles(t -> editor.renderer.updatePoint(t.x, t.y));
-            }else if(type == OpType.rotation.ordinal()){
-                if(tile.build != null) tile.build.rotation = to;
-            }else if(type == OpType.team.ordinal()){
-                tile.setTeam(Team.get(to));
-            }else if(type == OpType.overlay.ordinal()){
-                tile.setOverlayID(to);
+        if(type == OpType.floor.ordinal()){
+            tile.setFloor((Floor)content.block(to));
+        }else if(type == OpType.block.ordinal()){
+            Block block = content.block(to);
+            tile.setBlock(block, tile.team(), tile.build == null ? 0 : tile.build.rotation);
+        }else if(type == OpType.rotation.ordinal()){
+            if(tile.build != null) tile.build.rotation = to;
+        }else if(type == OpType.team.ordinal()){
+            tile.setTeam(Team.get(to));
+        }else if(type == OpType.overlay.ordinal()){
+            tile.setOverlayID(to);
+        }
+    }
+
+    /** @return a key unique to the position and type of an op. Supports coordinates up to 16383. */
+    static int key(long op){
+        return ((TileOp.x(op) & 0x3fff) << 17) | ((TileOp.y(op) & 0x3fff) << 3) | TileOp.type(op);
+    }
+
+    /**
+     * Encodes ops as runs. Each run stores its type, value, and position as a delta from the previous op;
+     * ops that follow with the same type and value at a constant step (e.g. a row or column of a fill) are folded into the run.
+     */
+    static byte[] encode(LongSeq ops){
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(ops.size, 16));
+        int lastx = 0, lasty = 0;
+
+        for(int i = 0; i < ops.size;){
+            long op = ops.get(i);
+            int x = TileOp.x(op), y = TileOp.y(op);
+            byte type = TileOp.type(op);
+            short value = TileOp.value(op);
+
+            //find run of ops with a constant step
+            int stepx = 0, stepy = 0, extra = 0;
+            if(i + 1 < ops.size){
+                long next = ops.get(i + 1);
+                stepx = TileOp.x(next) - x;
+                stepy = TileOp.y(next) - y;
+
+                int px = x, py = y;
+                for(int j = i + 1; j < ops.size; j++){
+                    long other = ops.get(j);
+                    if(TileOp.type(other) != type || TileOp.value(other) != value || TileOp.x(other) - px != stepx || TileOp.y(other) - py != stepy) break;
+                    px = TileOp.x(other);
+                    py = TileOp.y(other);
+                    extra++;
+                }
             }
-        });
-        editor.renderer.updatePoint(tile.x, tile.y);
+
+            out.write(type);
+            writeVar(out, zigzag(x - lastx));
+            writeVar(out, zigzag(y - lasty));
+            writeVar(out, zigzag(value));
+            writeVar(out, extra);
+            if(extra > 0){
+                writeVar(out, zigzag(stepx));
+                writeVar(out, zigzag(stepy));
+            }
+
+            lastx = x + stepx * extra;
+            lasty = y + stepy * extra;
+            i += extra + 1;
+        }
+
+        return out.toByteArray();
+    }
+
+    static LongSeq decode(byte[] bytes, int size){
+        LongSeq ops = new LongSeq(size);
+        int[] pos = {0};
+        int lastx = 0, lasty = 0;
+
+        while(pos[0] < bytes.length){
+            byte type = bytes[pos[0]++];
+            int x = lastx + unzigzag(readVar(bytes, pos));
+            int y = lasty + unzigzag(readVar(bytes, pos));
+            short value = (short)unzigzag(readVar(bytes, pos));
+            int extra = readVar(bytes, pos);
+            int stepx = 0, stepy = 0;
+            if(extra > 0){
+                stepx = unzigzag(readVar(bytes, pos));
+                stepy = unzigzag(readVar(bytes, pos));
+            }
+
+            for(int i = 0; i <= extra; i++){
+                ops.add(TileOp.get((short)(x + stepx * i), (short)(y + stepy * i), type, value));
+            }
+
+            lastx = x + stepx * extra;
+            lasty = y + stepy * extra;
+        }
+
+        return ops;
+    }
+
+    static byte[] inflate(byte[] bytes){
+        Inflater inflater = new Inflater();
+        try{
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[4096];
+            while(!inflater.finished()){
+                int read = inflater.inflate(buffer);
+                if(read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }catch(DataFormatException e){
+            throw new RuntimeException(e);
+        }finally{
+            inflater.end();
+        }
+    }
+
+    static int zigzag(int value){
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value){
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVar(ByteArrayOutputStream out, int value){
+        while((value & ~0x7f) != 0){
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVar(byte[] bytes, int[] pos){
+        int value = 0, shift = 0;
+        byte b;
+        do{
+            b = bytes[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        }while((b & 0x80) != 0);
+        return value;
     }
 
     @Struct
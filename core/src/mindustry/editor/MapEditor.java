@@ -1,5 +1,6 @@
 package mindustry.editor;
 
+import arc.*;
 import arc.files.*;
 import arc.func.*;
 import arc.graphics.*;
@@ -76,7 +77,7 @@ public class MapEditor{
         loading = false;
     }
 
-    /** Creates a 2-D array of EditorTiles with stone as the floor block. */
+    /** Creates a 2-D array of EditorTiles with stone as the floor block. Every cell gets a tile object; see {@link PackedTiles} for why. */
     private void createTiles(int width, int height){
         Tiles tiles = world.resize(width, height);
 
@@ -93,6 +94,7 @@ public class MapEditor{
 
     private void reset(){
         clearOp();
+        stack.memoryBudget = Core.settings.getInt("editorundomemory", 64) * 1024L * 1024L;
         brushSize = 1;
         drawBlock = Blocks.stone;
         tags = new StringMap();
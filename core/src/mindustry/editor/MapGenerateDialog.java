@@ -3,7 +3,6 @@ package mindustry.editor;
 import arc.*;
 import arc.func.*;
 import arc.graphics.*;
-import arc.math.*;
 import arc.math.geom.*;
 import arc.scene.ui.*;
 import arc.scene.ui.ImageButton.*;
@@ -17,21 +16,23 @@ import mindustry.graphics.*;
 import mindustry.io.*;
 import mindustry.maps.*;
 import mindustry.maps.filters.*;
-import mindustry.maps.filters.GenerateFilter.*;
 import mindustry.ui.*;
 import mindustry.ui.dialogs.*;
 import mindustry.world.*;
-import mindustry.world.blocks.environment.*;
 
 import static mindustry.Vars.*;
 
 @SuppressWarnings("unchecked")
 public class MapGenerateDialog extends BaseDialog{
+    /** minimum amount of tile-filter applications before a coarse preview is drawn first. */
+    static final int coarseThreshold = 1_000_000;
+    /** downscaling of the coarse preview, relative to the regular preview. */
+    static final int coarseScaling = 4;
+
     final boolean applied;
 
     Pixmap pixmap;
     Texture texture;
-    GenerateInput input = new GenerateInput();
     Seq<GenerateFilter> filters = new Seq<>();
     int scaling = mobile ? 3 : 1;
     Table filterTable;
@@ -39,21 +40,16 @@ public class MapGenerateDialog extends BaseDialog{
     AsyncExecutor executor = new AsyncExecutor(1);
     AsyncResult<Void> result;
     boolean generating;
-
-    long[] buffer1, buffer2;
+    /** incremented on every requested update; used to detect changes made while a preview is being generated. */
+    volatile int version;
+
+    /** downscaled editor tiles that the preview is generated from. */
+    PackedTiles base;
+    /** cached output of each filter in the preview chain, along with the key of the filter that produced it. */
+    Seq<PackedTiles> stages = new Seq<>();
+    Seq<String> stageKeys = new Seq<>();
+    FilterPipeline pipeline = new FilterPipeline(), coarsePipeline = new FilterPipeline();
     Cons<Seq<GenerateFilter>> applier;
-    CachedTile ctile = new CachedTile(){
-        //nothing.
-        @Override
-        protected void changeBuild(Team team, Prov<Building> entityprov, int rotation){
-
-        }
-
-        @Override
-        public void setBlock(Block type, Team team, int rotation, Prov<Building> entityprov){
-            this.block = type;
-        }
-    };
 
     /** @param applied whether or not to use the applied in-game mode. */
     public MapGenerateDialog(boolean applied){
@@ -149,47 +145,29 @@ public class MapGenerateDialog extends BaseDialog{
 
     /** Applies the specified filters to the editor. */
     public void applyToEditor(Seq<GenerateFilter> filters){
-        //writeback buffer
-        long[] writeTiles = new long[editor.width() * editor.height()];
+        FilterPipeline pipeline = new FilterPipeline();
+        pipeline.begin(editor.tiles());
 
         for(GenerateFilter filter : filters){
-            input.begin(editor.width(), editor.height(), editor::tile);
-
-            //write to buffer
-            for(int x = 0; x < editor.width(); x++){
-                for(int y = 0; y < editor.height(); y++){
-                    Tile tile = editor.tile(x, y);
-                    input.set(x, y, tile.block(), tile.floor(), tile.overlay());
-                    filter.apply(input);
-                    writeTiles[x + y*world.width()] = PackTile.get(input.block.id, input.floor.id, input.overlay.id);
-                }
-            }
-
-            editor.load(() -> {
-                //read from buffer back into tiles
-                for(int i = 0; i < editor.width() * editor.height(); i++){
-                    Tile tile = world.tiles.geti(i);
-                    long write = writeTiles[i];
-
-                    Block block = content.block(PackTile.block(write)), floor = content.block(PackTile.floor(write)), overlay = content.block(PackTile.overlay(write));
-
-                    //don't mess up synthetic stuff.
-                    if(!tile.synthetic() && !block.synthetic()){
-                        tile.setBlock(block);
-                    }
-
-                    tile.setFloor((Floor)floor);
-                    tile.setOverlay(overlay);
-                }
-            });
+            pipeline.apply(filter);
         }
 
+        //read from buffer back into tiles
+        editor.load(() -> pipeline.write(editor.tiles()));
+
         //reset undo stack as generation... messes things up
         editor.renderer.updateAll();
         editor.clearOp();
     }
 
     void setup(){
+        //a preview from the last time this was shown may still be generating, using the pipeline and stages
+        if(result != null){
+            result.get();
+            result = null;
+        }
+        generating = false;
+
         if(pixmap != null){
             pixmap.dispose();
             texture.dispose();
@@ -235,17 +213,15 @@ public class MapGenerateDialog extends BaseDialog{
             }).grow().uniformX().scrollX(false);
         }).grow();
 
-        buffer1 = create();
-        buffer2 = create();
+        base = new PackedTiles(pixmap.width, pixmap.height);
+        base.set(pipeline.begin(editor.tiles(), scaling));
+        stages.clear();
+        stageKeys.clear();
 
         update();
         rebuildFilters();
     }
 
-    long[] create(){
-        return new long[(editor.width() / scaling) * (editor.height() / scaling)];
-    }
-
     void rebuildFilters(){
         int cols = Math.max((int)(Core.graphics.getWidth()/2f / Scl.scl(290f)), 1);
         filterTable.clearChildren();
@@ -356,24 +332,14 @@ public class MapGenerateDialog extends BaseDialog{
         selection.show();
     }
 
-    long pack(Tile tile){
-        return PackTile.get(tile.blockID(), tile.floorID(), tile.overlayID());
-    }
-
-    Tile unpack(long tile){
-        ctile.setFloor((Floor)content.block(PackTile.floor(tile)));
-        ctile.setBlock(content.block(PackTile.block(tile)));
-        ctile.setOverlay(content.block(PackTile.overlay(tile)));
-        return ctile;
-    }
-
     void apply(){
         if(result != null){
             result.get();
         }
 
-        buffer1 = null;
-        buffer2 = null;
+        base = null;
+        stages.clear();
+        stageKeys.clear();
         generating = false;
         if(pixmap != null){
             pixmap.dispose();
@@ -385,71 +351,98 @@ public class MapGenerateDialog extends BaseDialog{
         applier.get(filters);
     }
 
+    /** @return a key that changes whenever the output of this filter may change. */
+    String key(GenerateFilter filter){
+        return filter.getClass().getName() + JsonIO.write(filter);
+    }
+
     void update(){
+        version++;
 
         if(generating){
+            //picked up once the current preview is done
             return;
         }
 
         var copy = filters.copy();
+        var keys = copy.map(this::key);
+        int submitted = version;
+        generating = true;
 
         result = executor.submit(() -> {
             try{
-                int w = pixmap.width;
-                world.setGenerating(true);
-                generating = true;
-
-                if(!filters.isEmpty()){
-                    //write to buffer1 for reading
-                    for(int px = 0; px < pixmap.width; px++){
-                        for(int py = 0; py < pixmap.height; py++){
-                            buffer1[px + py*w] = pack(editor.tile(px * scaling, py * scaling));
-                        }
-                    }
+                //skip every filter whose input and options are unchanged since the last preview
+                int start = 0;
+                while(start < copy.size && start < stageKeys.size && keys.get(start).equals(stageKeys.get(start))){
+                    start++;
                 }
 
-                for(var filter : copy){
-                    input.begin(editor.width(), editor.height(), (x, y) -> unpack(buffer1[Mathf.clamp(x / scaling, 0, pixmap.width -1) + w* Mathf.clamp(y / scaling, 0, pixmap.height -1)]));
+                //render a coarse preview of the whole chain first if there is a lot to redo
+                if((long)(copy.size - start) * base.width * base.height > coarseThreshold){
+                    coarsePipeline.begin(editor.tiles(), scaling * coarseScaling);
+                    for(var filter : copy){
+                        coarsePipeline.apply(filter);
+                    }
+                    render(coarsePipeline.result(), coarseScaling);
+                }
 
-                    //read from buffer1 and write to buffer2
-                    pixmap.each((px, py) -> {
-                        int x = px * scaling, y = py * scaling;
-                        long tile = buffer1[px + py * w];
-                        input.set(x, y, content.block(PackTile.block(tile)), content.block(PackTile.floor(tile)), content.block(PackTile.overlay(tile)));
-                        filter.apply(input);
-                        buffer2[px + py * w] = PackTile.get(input.block.id, input.floor.id, input.overlay.id);
-                    });
+                if(version == submitted){
+                    pipeline.begin(start == 0 ? base : stages.get(start - 1), scaling, editor.width(), editor.height());
 
-                    pixmap.each((px, py) -> buffer1[px + py*w] = buffer2[px + py*w]);
-                }
+                    for(int i = start; i < copy.size; i++){
+                        pipeline.apply(copy.get(i));
 
-                for(int px = 0; px < pixmap.width; px++){
-                    for(int py = 0; py < pixmap.height; py++){
-                        int color;
-                        //get result from buffer1 if there's filters left, otherwise get from editor directly
-                        if(filters.isEmpty()){
-                            Tile tile = editor.tile(px * scaling, py * scaling);
-                            color = MapIO.colorFor(tile.block(), tile.floor(), tile.overlay(), Team.derelict);
-                        }else{
-                            long tile = buffer1[px + py*w];
-                            color = MapIO.colorFor(content.block(PackTile.block(tile)), content.block(PackTile.floor(tile)), content.block(PackTile.overlay(tile)), Team.derelict);
+                        PackedTiles out = pipeline.result();
+                        if(i >= stages.size){
+                            stages.add(new PackedTiles(out.width, out.height));
+                            stageKeys.add(keys.get(i));
                         }
-                        pixmap.set(px, pixmap.height - 1 - py, color);
+                        stages.get(i).set(out);
+                        stageKeys.set(i, keys.get(i));
                     }
+
+                    stages.truncate(copy.size);
+                    stageKeys.truncate(copy.size);
+
+                    render(copy.isEmpty() ? base : stages.peek(), 1);
                 }
 
                 Core.app.post(() -> {
-                    if(pixmap == null || texture == null){
-                        return;
-                    }
-                    texture.draw(pixmap);
                     generating = false;
+                    //filters were changed while generating; catch up
+                    if(version != submitted && pixmap != null){
+                        update();
+                    }
                 });
             }catch(Exception e){
                 generating = false;
                 Log.err(e);
             }
-            world.setGenerating(false);
+        });
+    }
+
+    /**
+     * Draws packed tiles onto the preview, with each cell covering step x step pixels.
+     * Every pass is drawn into a pixmap of its own, which is handed to the main thread once finished, so uploads never see a half-drawn preview.
+     */
+    void render(PackedTiles tiles, int step){
+        Pixmap preview = this.pixmap;
+        if(preview == null) return;
+
+        Pixmap pixmap = new Pixmap(preview.width, preview.height);
+
+        for(int px = 0; px < pixmap.width; px++){
+            for(int py = 0; py < pixmap.height; py++){
+                int i = tiles.index(Math.min(px / step, tiles.width - 1), Math.min(py / step, tiles.height - 1));
+                pixmap.set(px, pixmap.height - 1 - py, MapIO.colorFor(tiles.block(i), tiles.floor(i), tiles.overlay(i), Team.derelict));
+            }
+        }
+
+        Core.app.post(() -> {
+            if(this.pixmap == preview && texture != null){
+                texture.draw(pixmap);
+            }
+            pixmap.dispose();
         });
     }
 }
@@ -6,24 +6,55 @@ import arc.graphics.g2d.*;
 import arc.math.*;
 import arc.struct.*;
 import arc.util.*;
+import arc.util.async.*;
 import mindustry.content.*;
 import mindustry.game.*;
 import mindustry.graphics.*;
 import mindustry.world.*;
 
+import java.util.*;
+import java.util.concurrent.*;
+
 import static mindustry.Vars.*;
 
+/**
+ * Renders the editor map into meshes of {@link #chunkSize} squared tiles.
+ * Large changes mark whole chunks dirty; the vertices of dirty chunks that are on screen are prepared on background threads
+ * from a copy of their tiles, and only a limited amount of finished chunks is uploaded to the GPU each frame.
+ * Single tile changes are still written directly.
+ */
 public class MapRenderer implements Disposable{
     private static final int chunkSize = 64;
+    /** maximum amount of finished chunks uploaded in a single frame. */
+    private static final int uploadsPerFrame = 4;
+    private static final int threads = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+
     private IndexedRenderer[][] chunks;
     private IntSet updates = new IntSet();
     private IntSet delayedUpdates = new IntSet();
-    private TextureRegion clearEditor;
+    /** chunks that need a full re-render, packed as x + y * chunk width. */
+    private IntSet chunkUpdates = new IntSet();
+    /** chunks whose vertices are currently being prepared. */
+    private IntSet building = new IntSet();
+    /** chunk vertices that are ready to be uploaded. */
+    private ConcurrentLinkedQueue<ChunkBuild> finished = new ConcurrentLinkedQueue<>();
+    /** builds that were uploaded or discarded, reused along with their buffers; only accessed on the main thread. */
+    private Seq<ChunkBuild> pool = new Seq<>();
+    /** incremented on resize, so that builds of the previous chunks are discarded. */
+    private int generation;
+    private AsyncExecutor executor = new AsyncExecutor(threads);
+
+    private float[] pointBuffer;
+    private Rand pointRand = new Rand();
+    private TextureRegion clearEditor, border;
     private int width, height;
 
     public void resize(int width, int height){
         updates.clear();
         delayedUpdates.clear();
+        chunkUpdates.clear();
+        building.clear();
+        generation++;
         if(chunks != null){
             for(int x = 0; x < chunks.length; x++){
                 for(int y = 0; y < chunks[0].length; y++){
@@ -47,16 +78,64 @@ public class MapRenderer implements Disposable{
     public void draw(float tx, float ty, float tw, float th){
         Draw.flush();
         clearEditor = Core.atlas.find("clear-editor");
+        border = Core.atlas.find("block-border-editor");
+
+        //????
+        if(chunks == null){
+            return;
+        }
+
+        int cw = chunks.length;
+
+        //upload finished chunks, within budget
+        for(int i = 0; i < uploadsPerFrame; i++){
+            ChunkBuild build = finished.poll();
+            if(build == null) break;
+
+            if(build.generation == generation){
+                int chunk = build.cx + build.cy * cw;
+                building.remove(chunk);
+                if(build.failed){
+                    //try again next frame
+                    chunkUpdates.add(chunk);
+                }else{
+                    chunks[build.cx][build.cy].upload(build.vertices);
+                }
+            }
+            pool.add(build);
+        }
 
-        updates.each(i -> render(i % width, i / width));
+        updates.each(i -> {
+            int chunk = (i % width) / chunkSize + (i / width) / chunkSize * cw;
+            if(building.contains(chunk)){
+                //the chunk is being rebuilt from older data, so it has to be rebuilt again afterwards
+                chunkUpdates.add(chunk);
+            }else if(!chunkUpdates.contains(chunk)){
+                renderPoint(i % width, i / width);
+            }
+        });
         updates.clear();
 
         updates.addAll(delayedUpdates);
         delayedUpdates.clear();
 
-        //????
-        if(chunks == null){
-            return;
+        //only chunks on screen are rebuilt; the rest stay dirty until they are scrolled into view
+        float scl = tw / width;
+        int
+        cx1 = Mathf.clamp((int)(-tx / scl) / chunkSize, 0, cw - 1),
+        cy1 = Mathf.clamp((int)(-ty / scl) / chunkSize, 0, chunks[0].length - 1),
+        cx2 = Mathf.clamp((int)((Core.graphics.getWidth() - tx) / scl) / chunkSize, 0, cw - 1),
+        cy2 = Mathf.clamp((int)((Core.graphics.getHeight() - ty) / scl) / chunkSize, 0, chunks[0].length - 1);
+
+        for(int cy = cy1; cy <= cy2 && building.size < threads * 2; cy++){
+            for(int cx = cx1; cx <= cx2 && building.size < threads * 2; cx++){
+                int chunk = cx + cy * cw;
+                if(chunkUpdates.contains(chunk) && !building.contains(chunk)){
+                    chunkUpdates.remove(chunk);
+                    building.add(chunk);
+                    submit(cx, cy);
+                }
+            }
         }
 
         var texture = Core.atlas.find("clear-editor").texture;
@@ -81,61 +160,133 @@ public class MapRenderer implements Disposable{
         updates.add(x + y * width);
     }
 
+    /** Marks every chunk that intersects the specified tile rectangle (inclusive, may be out of bounds) for a re-render. */
+    public void updateRegion(int x1, int y1, int x2, int y2){
+        if(chunks == null) return;
+
+        int cx1 = Math.max(x1, 0) / chunkSize, cy1 = Math.max(y1, 0) / chunkSize;
+        int cx2 = Math.min(Math.min(x2, width - 1) / chunkSize, chunks.length - 1), cy2 = Math.min(Math.min(y2, height - 1) / chunkSize, chunks[0].length - 1);
+
+        for(int cx = cx1; cx <= cx2; cx++){
+            for(int cy = cy1; cy <= cy2; cy++){
+                chunkUpdates.add(cx + cy * chunks.length);
+            }
+        }
+    }
+
+    /** Marks every chunk for a re-render. Chunks are rebuilt over the next frames as they become visible. */
     public void updateAll(){
+        loadRegions();
+        updateRegion(0, 0, width - 1, height - 1);
+    }
+
+    /** Resolves every region used by the renderer on the main thread, as some of them are loaded lazily. */
+    private void loadRegions(){
         clearEditor = Core.atlas.find("clear-editor");
-        for(int x = 0; x < width; x++){
-            for(int y = 0; y < height; y++){
-                render(x, y);
+        border = Core.atlas.find("block-border-editor");
+
+        for(Block block : content.blocks()){
+            block.editorIcon();
+            block.editorVariantRegions();
+        }
+    }
+
+    private void submit(int cx, int cy){
+        ChunkBuild build = pool.isEmpty() ? new ChunkBuild() : pool.pop();
+        build.cx = cx;
+        build.cy = cy;
+        build.generation = generation;
+        build.failed = false;
+
+        //copy the tiles on the main thread, as they may be edited or replaced while the chunk is built
+        Tiles tiles = editor.tiles();
+        int minx = cx * chunkSize, miny = cy * chunkSize;
+        int maxx = Math.min(minx + chunkSize, width), maxy = Math.min(miny + chunkSize, height);
+        for(int x = minx; x < maxx; x++){
+            for(int y = miny; y < maxy; y++){
+                build.set((x - minx) + (y - miny) * chunkSize, tiles.getn(x, y));
             }
         }
+
+        executor.submit(() -> {
+            try{
+                float[] vertices = build.vertices;
+
+                //edge chunks do not cover every sprite, and buffers are reused
+                if(maxx - minx < chunkSize || maxy - miny < chunkSize){
+                    Arrays.fill(vertices, 0f);
+                }
+
+                Rand rand = new Rand();
+                for(int x = minx; x < maxx; x++){
+                    for(int y = miny; y < maxy; y++){
+                        int i = (x - minx) + (y - miny) * chunkSize;
+                        render(x, y, content.block(build.floors[i]), content.block(build.walls[i]), content.block(build.overlays[i]),
+                            Team.get(build.teams[i]), build.centers[i], build.rotations[i] * 90f, vertices, rand);
+                    }
+                }
+            }catch(Throwable t){
+                build.failed = true;
+                Log.err(t);
+            }finally{
+                finished.add(build);
+            }
+        });
     }
 
-    private void render(int wx, int wy){
-        int x = wx / chunkSize, y = wy / chunkSize;
-        IndexedRenderer mesh = chunks[x][y];
-        Tile tile = editor.tiles().getn(wx, wy);
+    private void renderPoint(int wx, int wy){
+        if(pointBuffer == null) pointBuffer = new float[chunkSize * chunkSize * 2 * IndexedRenderer.spriteSize];
 
-        Team team = tile.team();
-        Block floor = tile.floor();
-        Block wall = tile.block();
+        IndexedRenderer mesh = chunks[wx / chunkSize][wy / chunkSize];
+        int idxWall = (wx % chunkSize) + (wy % chunkSize) * chunkSize;
 
+        Tile tile = editor.tiles().getn(wx, wy);
+        render(wx, wy, tile.floor(), tile.block(), tile.overlay(), tile.team(), tile.isCenter(),
+            tile.build == null ? 0f : tile.build.rotdeg(), pointBuffer, pointRand);
+        mesh.update(idxWall, pointBuffer);
+        mesh.update(idxWall + chunkSize * chunkSize, pointBuffer);
+    }
+
+    /** Writes the sprites of a tile into the vertices of its chunk. Does not use any GL state, nor read any tiles. */
+    private void render(int wx, int wy, Block floor, Block wall, Block overlay, Team team, boolean center, float rotation, float[] vertices, Rand rand){
         TextureRegion region;
 
         int idxWall = (wx % chunkSize) + (wy % chunkSize) * chunkSize;
         int idxDecal = (wx % chunkSize) + (wy % chunkSize) * chunkSize + chunkSize * chunkSize;
-        boolean center = tile.isCenter();
+        float white = Color.whiteFloatBits;
 
         if(wall != Blocks.air && wall.synthetic()){
             region = !wall.editorIcon().found() || !center ? clearEditor : wall.editorIcon();
 
             float width = region.width * Draw.scl, height = region.height * Draw.scl;
 
-            mesh.draw(idxWall, region,
+            IndexedRenderer.vertices(vertices, idxWall, region,
             wx * tilesize + wall.offset + (tilesize - width) / 2f,
             wy * tilesize + wall.offset + (tilesize - height) / 2f,
             width, height,
-            tile.build == null || !wall.rotate ? 0 : tile.build.rotdeg());
+            !wall.rotate ? 0 : rotation, white);
         }else{
-            region = floor.editorVariantRegions()[Mathf.randomSeed(idxWall, 0, floor.editorVariantRegions().length - 1)];
+            region = variant(floor.editorVariantRegions(), idxWall, rand);
 
-            mesh.draw(idxWall, region, wx * tilesize, wy * tilesize, 8, 8);
+            IndexedRenderer.vertices(vertices, idxWall, region, wx * tilesize, wy * tilesize, 8, 8, white);
         }
 
         float offsetX = -(wall.size / 3) * tilesize, offsetY = -(wall.size / 3) * tilesize;
+        float color = white;
 
         if((wall.update || wall.destructible) && center){
-            mesh.setColor(team.color);
-            region = Core.atlas.find("block-border-editor");
+            color = team.color.toFloatBits();
+            region = border;
         }else if(!wall.synthetic() && wall != Blocks.air && center){
             region = !wall.editorIcon().found() ?
                 clearEditor : wall.variants > 0 ?
-                wall.editorVariantRegions()[Mathf.randomSeed(idxWall, 0, wall.editorVariantRegions().length - 1)] :
+                variant(wall.editorVariantRegions(), idxWall, rand) :
                 wall.editorIcon();
 
             offsetX = tilesize / 2f - region.width / 2f * Draw.scl;
             offsetY = tilesize / 2f - region.height / 2f * Draw.scl;
-        }else if(wall == Blocks.air && !tile.overlay().isAir()){
-            region = tile.overlay().editorVariantRegions()[Mathf.randomSeed(idxWall, 0, tile.overlay().editorVariantRegions().length - 1)];
+        }else if(wall == Blocks.air && !overlay.isAir()){
+            region = variant(overlay.editorVariantRegions(), idxWall, rand);
         }else{
             region = clearEditor;
         }
@@ -148,12 +299,22 @@ public class MapRenderer implements Disposable{
             height = tilesize;
         }
 
-        mesh.draw(idxDecal, region, wx * tilesize + offsetX, wy * tilesize + offsetY, width, height);
-        mesh.setColor(Color.white);
+        IndexedRenderer.vertices(vertices, idxDecal, region, wx * tilesize + offsetX, wy * tilesize + offsetY, width, height, color);
+    }
+
+    /** Picks a variant region based on a seed. Uses the specified random generator, as {@link Mathf#randomSeed(long)} is not thread-safe. */
+    private static TextureRegion variant(TextureRegion[] regions, int seed, Rand rand){
+        rand.setSeed(seed);
+        return regions[rand.random(regions.length - 1)];
     }
 
     @Override
     public void dispose(){
+        executor.dispose();
+        executor = new AsyncExecutor(threads);
+        finished.clear();
+        building.clear();
+
         if(chunks == null){
             return;
         }
@@ -165,4 +326,24 @@ public class MapRenderer implements Disposable{
             }
         }
     }
+
+    /** Vertices of a chunk prepared off the main thread, and the copy of its tiles they are prepared from. */
+    private static class ChunkBuild{
+        int cx, cy, generation;
+        /** set if preparing the vertices threw; the chunk is then rebuilt */
+        volatile boolean failed;
+        final float[] vertices = new float[chunkSize * chunkSize * 2 * IndexedRenderer.spriteSize];
+        final short[] floors = new short[chunkSize * chunkSize], overlays = new short[chunkSize * chunkSize], walls = new short[chunkSize * chunkSize];
+        final byte[] teams = new byte[chunkSize * chunkSize], rotations = new byte[chunkSize * chunkSize];
+        final boolean[] centers = new boolean[chunkSize * chunkSize];
+
+        void set(int index, Tile tile){
+            floors[index] = tile.floorID();
+            overlays[index] = tile.overlayID();
+            walls[index] = tile.blockID();
+            teams[index] = (byte)tile.getTeamID();
+            rotations[index] = tile.build == null ? 0 : (byte)tile.build.rotation;
+            centers[index] = tile.isCenter();
+        }
+    }
 }
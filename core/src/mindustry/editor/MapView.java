@@ -11,6 +11,7 @@ import arc.scene.*;
 import arc.scene.event.*;
 import arc.scene.ui.*;
 import arc.scene.ui.layout.*;
+import arc.struct.*;
 import arc.util.*;
 import mindustry.graphics.*;
 import mindustry.input.*;
@@ -320,11 +321,17 @@ public class MapView extends Element implements GestureListener{
             Copy c = editor.copyData;
 
             if(!c.empty()){
-                for(int i = 0; i < c.lines.size; i += 2){
-                    point.set(c.dx, c.dy).add(c.lines.get(i));
+                //only outline the part of the selection that is on screen
+                Point2 min = project(0f, 0f);
+                int x1 = min.x - 1, y1 = min.y - 1;
+                Point2 max = project(getWidth(), getHeight());
+                IntSeq lines = c.lines(x1, y1, max.x + 1, max.y + 1);
+
+                for(int i = 0; i < lines.size; i += 2){
+                    point.set(c.dx, c.dy).add(Point2.x(lines.get(i)), Point2.y(lines.get(i)));
                     Vec2 a = unproject(point.x, point.y).add(x, y);
                     float ax = a.x, ay = a.y;
-                    point.set(c.dx, c.dy).add(c.lines.get(i + 1));
+                    point.set(c.dx, c.dy).add(Point2.x(lines.get(i + 1)), Point2.y(lines.get(i + 1)));
                     Vec2 b = unproject(point.x, point.y).add(x, y);
                     Lines.line(ax, ay, b.x, b.y);
                 }
@@ -4,9 +4,17 @@ import arc.struct.*;
 
 public class OperationStack{
     private static final int maxSize = 10;
+    /** amount of most recent operations that are kept uncompressed. */
+    private static final int hotSize = 2;
+
     private Seq<DrawOperation> stack = new Seq<>();
     private int index = 0;
 
+    /** maximum memory used by all operations in bytes; the oldest history is evicted past this. */
+    public long memoryBudget = 64L * 1024 * 1024;
+    /** whether to deflate operations that are not among the most recent ones. */
+    public boolean compressCold = true;
+
     public OperationStack(){
 
     }
@@ -19,11 +27,45 @@ public class OperationStack{
     public void add(DrawOperation action){
         stack.truncate(stack.size + index);
         index = 0;
+        action.compact();
         stack.add(action);
 
         if(stack.size > maxSize){
             stack.remove(0);
         }
+
+        trim();
+    }
+
+    /**
+     * Compresses operations away from the undo position, then evicts the oldest history until under budget.
+     * Called after every change, since replaying an operation stores it uncompressed again.
+     */
+    private void trim(){
+        int position = stack.size - 1 + index;
+
+        if(compressCold){
+            for(int i = 0; i < stack.size; i++){
+                if(i <= position - hotSize || i > position + hotSize){
+                    stack.get(i).compress();
+                }
+            }
+        }
+
+        //only applied operations can be evicted, since later redos depend on them; the newest operation is always kept
+        long memory = memory();
+        while(memory > memoryBudget && stack.size > 1 && canUndo()){
+            memory -= stack.remove(0).memory();
+        }
+    }
+
+    /** @return approximate memory used by all operations, in bytes. */
+    public long memory(){
+        long sum = 0;
+        for(DrawOperation op : stack){
+            sum += op.memory();
+        }
+        return sum;
     }
 
     public boolean canUndo(){
@@ -39,6 +81,7 @@ public class OperationStack{
 
         stack.get(stack.size - 1 + index).undo();
         index--;
+        trim();
     }
 
     public void redo(){
@@ -46,6 +89,6 @@ public class OperationStack{
 
         index++;
         stack.get(stack.size - 1 + index).redo();
-
+        trim();
     }
 }
@@ -26,7 +26,9 @@ public class EntityCollisions{
     //entity collisions
     private Seq<Hitboxc> arrOut = new Seq<>(Hitboxc.class);
     private Cons<Hitboxc> hitCons = this::updateCollision;
-    private Cons<QuadTree> treeCons = tree -> tree.intersect(r2, arrOut);
+    private Cons<Hitboxc> arrAdder = arrOut::add;
+    @SuppressWarnings("unchecked")
+    private Cons<EntityGrid> gridCons = grid -> grid.intersect(r2.x, r2.y, r2.width, r2.height, arrAdder);
 
     public void moveCheck(Hitboxc entity, float deltax, float deltay, SolidPred solidCheck){
         if(!solidCheck.solid(entity.tileX(), entity.tileY())){
@@ -119,6 +121,16 @@ public class EntityCollisions{
 
     @SuppressWarnings("unchecked")
     public <T extends Hitboxc> void updatePhysics(EntityGroup<T> group){
+        EntityGrid grid = group.grid();
+        if(grid != null){
+            //the grid persists; entities are only moved when they change cells
+            group.each(s -> {
+                s.updateLastPosition();
+                grid.update(s);
+            });
+            return;
+        }
+
         QuadTree tree = group.tree();
         tree.clear();
 
@@ -230,7 +242,7 @@ public class EntityCollisions{
         arrOut.clear();
 
         //get all targets based on what entity wants to collide with
-        solid.getCollisions(treeCons);
+        solid.getCollisions(gridCons);
 
         var items = arrOut.items;
         int size = arrOut.size;
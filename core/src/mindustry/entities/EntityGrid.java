@@ -0,0 +1,173 @@
+package mindustry.entities;
+
+import arc.func.*;
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import mindustry.gen.*;
+
+import java.util.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * A uniform grid of entities that is kept between frames, as an alternative to rebuilding a {@link QuadTree} every frame.
+ * Entities are filed under the cell containing their center; moving one only touches the grid when it changes cells.
+ * Cells are linked lists over flat arrays, so neither updates nor queries allocate once the arrays have grown.
+ */
+@SuppressWarnings("unchecked")
+public class EntityGrid<T extends Hitboxc>{
+    /** Size of a cell in world units. */
+    public static final float cellSize = tilesize * 4f;
+
+    private final float x, y;
+    private final int width, height;
+    /** first slot in each cell, or -1 */
+    private final int[] heads;
+
+    /** per-slot data; slots are reused after removal */
+    private T[] entities = (T[])new Hitboxc[64];
+    private int[] next = new int[64], prev = new int[64], cells = new int[64], rounds = new int[64];
+    private int slots;
+    /** incremented by {@link #removeStale()}; entities updated since then are marked with it */
+    private int round;
+    private final IntSeq free = new IntSeq();
+    /** slot of every entity, by ID */
+    private final IntIntMap slotIDs = new IntIntMap();
+    /** largest hitbox size of any entity; queries are extended by this much, as entities are only filed under their center */
+    private float maxSize;
+
+    private final Rect rect = new Rect();
+
+    public EntityGrid(float x, float y, float w, float h){
+        this.x = x;
+        this.y = y;
+        this.width = Math.max((int)Math.ceil(w / cellSize), 1);
+        this.height = Math.max((int)Math.ceil(h / cellSize), 1);
+        this.heads = new int[width * height];
+        Arrays.fill(heads, -1);
+    }
+
+    /** Adds an entity, or moves it to its current cell if it is already present. */
+    public void update(T entity){
+        int slot = slotIDs.get(entity.id(), -1);
+        int cell = cell(entity.getX(), entity.getY());
+        maxSize = Math.max(maxSize, entity.hitSize());
+
+        if(slot == -1){
+            slot = free.isEmpty() ? slots++ : free.pop();
+            if(slot >= entities.length) grow();
+
+            slotIDs.put(entity.id(), slot);
+            entities[slot] = entity;
+            link(slot, cell);
+        }else if(cells[slot] != cell){
+            unlink(slot);
+            link(slot, cell);
+        }
+        rounds[slot] = round;
+    }
+
+    /**
+     * Removes every entity that was not passed to {@link #update(Hitboxc)} since the last call.
+     * For grids that are kept in sync by updating all of their entities once per frame, rather than removing them as they leave.
+     */
+    public void removeStale(){
+        for(int slot = 0; slot < slots; slot++){
+            T entity = entities[slot];
+            if(entity != null && rounds[slot] != round){
+                remove(entity);
+            }
+        }
+        round++;
+    }
+
+    public void remove(T entity){
+        int slot = slotIDs.remove(entity.id(), -1);
+        if(slot == -1) return;
+
+        unlink(slot);
+        entities[slot] = null;
+        cells[slot] = -1;
+        free.add(slot);
+    }
+
+    /**
+     * Calls the consumer for every entity whose hitbox overlaps the rectangle.
+     * The consumer may remove the entity it is passed, but should not add any.
+     */
+    public void intersect(float x, float y, float width, float height, Cons<? super T> out){
+        float pad = maxSize / 2f;
+        int x1 = cellX(x - pad), y1 = cellY(y - pad), x2 = cellX(x + width + pad), y2 = cellY(y + height + pad);
+
+        for(int cy = y1; cy <= y2; cy++){
+            for(int cx = x1; cx <= x2; cx++){
+                int slot = heads[cx + cy * this.width];
+                while(slot != -1){
+                    //read ahead, in case the consumer removes this entity
+                    int following = next[slot];
+                    T entity = entities[slot];
+
+                    //entities removed by the consumer are left linked until the next one is read
+                    if(entity != null){
+                        entity.hitbox(rect);
+                        if(rect.overlaps(x, y, width, height)){
+                            out.get(entity);
+                        }
+                    }
+                    slot = following;
+                }
+            }
+        }
+    }
+
+    public void clear(){
+        Arrays.fill(heads, -1);
+        Arrays.fill(entities, null);
+        slotIDs.clear();
+        free.clear();
+        slots = 0;
+        maxSize = 0f;
+    }
+
+    private void link(int slot, int cell){
+        int head = heads[cell];
+        cells[slot] = cell;
+        prev[slot] = -1;
+        next[slot] = head;
+        if(head != -1) prev[head] = slot;
+        heads[cell] = slot;
+    }
+
+    private void unlink(int slot){
+        int before = prev[slot], after = next[slot];
+        if(before == -1){
+            heads[cells[slot]] = after;
+        }else{
+            next[before] = after;
+        }
+        if(after != -1) prev[after] = before;
+    }
+
+    private void grow(){
+        int size = entities.length * 2;
+        entities = Arrays.copyOf(entities, size);
+        next = Arrays.copyOf(next, size);
+        prev = Arrays.copyOf(prev, size);
+        cells = Arrays.copyOf(cells, size);
+        rounds = Arrays.copyOf(rounds, size);
+    }
+
+    private int cell(float wx, float wy){
+        return cellX(wx) + cellY(wy) * width;
+    }
+
+    /** Positions outside the grid are clamped to its edge cells. */
+    private int cellX(float wx){
+        return Mathf.clamp((int)((wx - x) / cellSize), 0, width - 1);
+    }
+
+    private int cellY(float wy){
+        return Mathf.clamp((int)((wy - y) / cellSize), 0, height - 1);
+    }
+}
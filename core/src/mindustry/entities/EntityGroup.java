@@ -20,8 +20,10 @@ public class EntityGroup<T extends Entityc> implements Iterable<T>{
     private final Seq<T> intersectArray = new Seq<>();
     private final Rect viewport = new Rect();
     private final Rect intersectRect = new Rect();
+    private final Cons<T> intersectAdder = intersectArray::add;
     private IntMap<T> map;
     private QuadTree tree;
+    private EntityGrid grid;
     private boolean clearing;
 
     private int index;
@@ -31,9 +33,16 @@ public class EntityGroup<T extends Entityc> implements Iterable<T>{
     }
 
     public EntityGroup(Class<T> type, boolean spatial, boolean mapping){
+        this(type, spatial, mapping, false);
+    }
+
+    /** @param grid whether a spatial group is indexed by a persistent {@link EntityGrid} instead of a quadtree. */
+    public EntityGroup(Class<T> type, boolean spatial, boolean mapping, boolean grid){
         array = new Seq<>(false, 32, type);
 
-        if(spatial){
+        if(spatial && grid){
+            this.grid = new EntityGrid<>(0, 0, 0, 0);
+        }else if(spatial){
             tree = new QuadTree<>(new Rect(0, 0, 0, 0));
         }
 
@@ -113,27 +122,48 @@ public class EntityGroup<T extends Entityc> implements Iterable<T>{
     public void intersect(float x, float y, float width, float height, Cons<? super T> out){
         //don't waste time for empty groups
         if(isEmpty()) return;
-        tree.intersect(x, y, width, height, out);
+        if(grid != null){
+            grid.intersect(x, y, width, height, out);
+        }else{
+            tree.intersect(x, y, width, height, out);
+        }
     }
 
     public Seq<T> intersect(float x, float y, float width, float height){
         intersectArray.clear();
         //don't waste time for empty groups
         if(isEmpty()) return intersectArray;
-        tree.intersect(intersectRect.set(x, y, width, height), intersectArray);
+        if(grid != null){
+            grid.intersect(x, y, width, height, intersectAdder);
+        }else{
+            tree.intersect(intersectRect.set(x, y, width, height), intersectArray);
+        }
         return intersectArray;
     }
 
     public QuadTree tree(){
-        if(tree == null) throw new RuntimeException("This group does not support quadtrees! Enable quadtrees when creating it.");
+        if(tree == null) throw new RuntimeException(grid != null ? "This group is indexed by a grid; use grid() instead." : "This group does not support quadtrees! Enable quadtrees when creating it.");
         return tree;
     }
 
-    /** Resizes the internal quadtree, if it is enabled.*/
+    /** @return the grid this group is indexed by, or null if it uses a quadtree or is not spatial. */
+    @Nullable
+    public EntityGrid grid(){
+        return grid;
+    }
+
+    /** Resizes the internal quadtree or grid, if it is enabled.*/
     public void resize(float x, float y, float w, float h){
         if(tree != null){
             tree = new QuadTree<>(new Rect(x, y, w, h));
         }
+
+        if(grid != null){
+            grid = new EntityGrid<>(x, y, w, h);
+            for(int i = 0; i < array.size; i++){
+                grid.update((Hitboxc)array.items[i]);
+            }
+        }
     }
 
     public boolean isEmpty(){
@@ -174,6 +204,9 @@ public class EntityGroup<T extends Entityc> implements Iterable<T>{
             if(map != null){
                 map.remove(type.id());
             }
+            if(grid != null){
+                grid.remove((Hitboxc)type);
+            }
 
             //fix iteration index when removing
             if(index >= idx){
@@ -188,6 +221,7 @@ public class EntityGroup<T extends Entityc> implements Iterable<T>{
         array.each(Entityc::remove);
         array.clear();
         if(map != null) map.clear();
+        if(grid != null) grid.clear();
 
         clearing = false;
     }
@@ -354,10 +354,10 @@ public class Units{
     /** Iterates over all units in a rectangle. */
     public static void nearby(@Nullable Team team, float x, float y, float width, float height, Cons<Unit> cons){
         if(team != null){
-            team.data().tree().intersect(x, y, width, height, cons);
+            team.data().grid().intersect(x, y, width, height, cons);
         }else{
             for(var other : state.teams.getActive()){
-                other.tree().intersect(x, y, width, height, cons);
+                other.grid().intersect(x, y, width, height, cons);
             }
         }
     }
@@ -78,6 +78,8 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
 
     private transient boolean sleeping;
     private transient float sleepTime;
+    /** Tick at which this building is woken up by the {@link SleepScheduler}, or -1 if it sleeps until something changes. */
+    transient int wakeTick = -1;
     private transient boolean initialized;
 
     /** Sets this tile entity data to this and adds it if necessary. */
@@ -385,6 +387,21 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
         }
     }
 
+    /**
+     * Goes to sleep right away, until the specified amount of ticks has passed or something wakes it up earlier:
+     * items or liquids arriving, a configuration, or a proximity or power graph change.
+     * For buildings that have nothing to do but retry something on a timer.
+     */
+    public void sleepFor(float ticks){
+        if(sleeping) return;
+
+        remove();
+        sleeping = true;
+        sleepingEntities++;
+        wakeTick = logic.sleepScheduler.wakeTick(ticks);
+        logic.sleepScheduler.schedule(self());
+    }
+
     /** Call when this entity is updating. This wakes it up. */
     public void noSleep(){
         sleepTime = 0f;
@@ -392,6 +409,21 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
             add();
             sleeping = false;
             sleepingEntities--;
+            wakeTick = -1;
+        }
+    }
+
+    public boolean isSleeping(){
+        return sleeping;
+    }
+
+    /** Forgets that this building is asleep without adding it back. Called when it is removed from its tile. */
+    public void clearSleep(){
+        sleepTime = 0f;
+        if(sleeping){
+            sleeping = false;
+            sleepingEntities--;
+            wakeTick = -1;
         }
     }
 
@@ -432,7 +464,7 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
 
     /** Called when an unloader takes an item. */
     public void itemTaken(Item item){
-
+        noSleep();
     }
 
     /** Called when this block is dropped as a payload. */
@@ -544,6 +576,7 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
     }
 
     public void handleItem(Building source, Item item){
+        noSleep();
         items.add(item, 1);
     }
 
@@ -556,6 +589,7 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
     }
 
     public void handleLiquid(Building source, Liquid liquid, float amount){
+        noSleep();
         liquids.add(liquid, amount);
     }
 
@@ -1000,6 +1034,8 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
             lastAccessed = builder.getPlayer().name;
         }
 
+        noSleep();
+
         if(block.configurations.containsKey(type)){
             block.configurations.get(type).get(this, value);
         }else if(value instanceof Building build){
@@ -1330,6 +1366,16 @@ abstract class BuildingComp implements Posc, Teamc, Healthc, Buildingc, Timerc,
 
     }
 
+    /**
+     * The part of the update that only changes the state of this building.
+     * Blocks that implement this call it at the start of {@link #updateTile()} unless {@link Block#parallelUpdate} is set,
+     * in which case it is called on a worker thread for all buildings before any of them update instead;
+     * anything that affects other buildings, effects or random numbers must then be left to updateTile(), which runs in order.
+     */
+    public void updateParallel(){
+
+    }
+
     /** @return ambient sound volume scale. */
     public float ambientVolume(){
         return efficiency();
@@ -7,6 +7,7 @@ import arc.struct.*;
 import arc.util.*;
 import mindustry.annotations.Annotations.*;
 import mindustry.core.*;
+import mindustry.entities.*;
 import mindustry.entities.bullet.*;
 import mindustry.game.*;
 import mindustry.game.Teams.*;
@@ -35,11 +36,11 @@ abstract class BulletComp implements Timedc, Damagec, Hitboxc, Teamc, Posc, Draw
     transient @Nullable Trail trail;
 
     @Override
-    public void getCollisions(Cons<QuadTree> consumer){
+    public void getCollisions(Cons<EntityGrid> consumer){
         Seq<TeamData> data = state.teams.present;
         for(int i = 0; i < data.size; i++){
             if(data.items[i].team != team){
-                consumer.get(data.items[i].tree());
+                consumer.get(data.items[i].grid());
             }
         }
     }
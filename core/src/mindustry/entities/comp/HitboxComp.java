@@ -34,7 +34,7 @@ abstract class HitboxComp implements Posc, Sized, QuadTreeObject{
         return hitSize;
     }
 
-    void getCollisions(Cons<QuadTree> consumer){
+    void getCollisions(Cons<EntityGrid> consumer){
 
     }
 
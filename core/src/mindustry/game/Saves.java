@@ -3,6 +3,7 @@ package mindustry.game;
 import arc.*;
 import arc.assets.*;
 import arc.files.*;
+import arc.func.*;
 import arc.graphics.*;
 import arc.struct.*;
 import arc.util.*;
@@ -46,6 +47,7 @@ public class Saves{
 
     public void load(){
         saves.clear();
+        SaveIO.deleteTempFiles(saveDirectory);
 
         for(Fi file : saveDirectory.list()){
             if(!file.name().contains("backup") && SaveIO.isSaveValid(file)){
@@ -89,15 +91,7 @@ public class Saves{
             time += Time.delta;
             if(time > Core.settings.getInt("saveinterval") * 60){
                 saving = true;
-
-                try{
-                    current.save();
-                }catch(Throwable t){
-                    Log.err(t);
-                }
-
-                Time.runTask(3f, () -> saving = false);
-
+                current.saveAsync(() -> Time.runTask(3f, () -> saving = false));
                 time = 0;
             }
         }else{
@@ -208,6 +202,25 @@ public class Saves{
             savePreview();
         }
 
+        /**
+         * Saves without blocking the game; see {@link SaveIO#saveAsync(Fi, Runnable, Cons)}.
+         * @param done called on the main thread once saving has finished, successfully or not.
+         */
+        public void saveAsync(Runnable done){
+            SaveIO.saveAsync(file, () -> {
+                meta = SaveIO.getMeta(file);
+                savePreview();
+                done.run();
+            }, e -> {
+                Log.err(e);
+                done.run();
+            });
+
+            if(state.isGame()){
+                current = this;
+            }
+        }
+
         private void savePreview(){
             if(Core.assets.isLoaded(loadPreviewFile().path())){
                 Core.assets.unload(loadPreviewFile().path());
@@ -9,6 +9,7 @@ import arc.util.*;
 import mindustry.*;
 import mindustry.ai.*;
 import mindustry.content.*;
+import mindustry.entities.*;
 import mindustry.entities.units.*;
 import mindustry.gen.*;
 import mindustry.type.*;
@@ -148,9 +149,6 @@ public class Teams{
             data.presentFlag = false;
             data.unitCount = 0;
             data.units.clear();
-            if(data.tree != null){
-                data.tree.clear();
-            }
 
             if(data.typeCounts != null){
                 Arrays.fill(data.typeCounts, 0);
@@ -172,7 +170,7 @@ public class Teams{
         for(Unit unit : Groups.unit){
             if(unit.type == null) continue;
             TeamData data = unit.team.data();
-            data.tree().insert(unit);
+            data.grid().update(unit);
             data.units.add(unit);
             data.presentFlag = true;
 
@@ -193,6 +191,14 @@ public class Teams{
             count(unit);
         }
 
+        //drop units that died or changed teams since the last frame
+        for(Team team : Team.all){
+            TeamData data = team.data();
+            if(data.grid != null){
+                data.grid.removeStale();
+            }
+        }
+
         //update presence of each team.
         for(Team team : Team.all){
             TeamData data = team.data();
@@ -247,9 +253,9 @@ public class Teams{
         /** Counts for each type of unit. Do not access directly. */
         @Nullable
         public int[] typeCounts;
-        /** Quadtree for units of this team. Do not access directly. */
+        /** Grid of the units of this team, kept between frames. Do not access directly. */
         @Nullable
-        public QuadTree<Unit> tree;
+        public EntityGrid<Unit> grid;
         /** Units of this team. Updated each frame. */
         public Seq<Unit> units = new Seq<>();
         /** Units of this team by type. Updated each frame. */
@@ -304,9 +310,12 @@ public class Teams{
             typeCounts[type.id] = Math.max(amount + typeCounts[type.id], 0);
         }
 
-        public QuadTree<Unit> tree(){
-            if(tree == null) tree = new QuadTree<>(Vars.world.getQuadBounds(new Rect()));
-            return tree;
+        public EntityGrid<Unit> grid(){
+            if(grid == null){
+                Rect bounds = Vars.world.getQuadBounds(new Rect());
+                grid = new EntityGrid<>(bounds.x, bounds.y, bounds.width, bounds.height);
+            }
+            return grid;
         }
 
         public int countType(UnitType type){
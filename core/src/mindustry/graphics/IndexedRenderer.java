@@ -8,6 +8,8 @@ import arc.util.*;
 
 public class IndexedRenderer implements Disposable{
     private static final int vsize = 5;
+    /** Amount of floats used by a single sprite. */
+    public static final int spriteSize = vsize * 6;
 
     private final Shader program = new Shader(
     "attribute vec4 a_position;\n" +
@@ -33,7 +35,7 @@ public class IndexedRenderer implements Disposable{
     "}"
     );
     private Mesh mesh;
-    private float[] tmpVerts = new float[vsize * 6];
+    private float[] tmpVerts = new float[spriteSize];
     private float[] vertices;
 
     private Mat projMatrix = new Mat();
@@ -64,6 +66,27 @@ public class IndexedRenderer implements Disposable{
     }
 
     public void draw(int index, TextureRegion region, float x, float y, float w, float h){
+        vertices(tmpVerts, 0, region, x, y, w, h, color);
+        mesh.updateVertices(index * spriteSize, tmpVerts);
+    }
+
+    public void draw(int index, TextureRegion region, float x, float y, float w, float h, float rotation){
+        vertices(tmpVerts, 0, region, x, y, w, h, rotation, color);
+        mesh.updateVertices(index * spriteSize, tmpVerts);
+    }
+
+    /** Copies a single sprite from an array laid out like this renderer's vertices. */
+    public void update(int index, float[] vertices){
+        mesh.updateVertices(index * spriteSize, vertices, index * spriteSize, spriteSize);
+    }
+
+    /** Replaces all vertices of this renderer. Must be called on the main thread. */
+    public void upload(float[] vertices){
+        mesh.setVertices(vertices, 0, Math.min(vertices.length, this.vertices.length));
+    }
+
+    /** Writes the vertices of a sprite into the specified array; does not touch any GL state, so it is safe to call from other threads. */
+    public static void vertices(float[] vertices, int index, TextureRegion region, float x, float y, float w, float h, float color){
         float fx2 = x + w;
         float fy2 = y + h;
         float u = region.u;
@@ -71,10 +94,7 @@ public class IndexedRenderer implements Disposable{
         float u2 = region.u2;
         float v2 = region.v;
 
-        float[] vertices = tmpVerts;
-        float color = this.color;
-
-        int idx = 0;
+        int idx = index * spriteSize;
         vertices[idx++] = x;
         vertices[idx++] = y;
         vertices[idx++] = color;
@@ -110,12 +130,11 @@ public class IndexedRenderer implements Disposable{
         vertices[idx++] = y;
         vertices[idx++] = color;
         vertices[idx++] = u;
-        vertices[idx++] = v;
-
-        mesh.updateVertices(index * vsize * 6, vertices);
+        vertices[idx] = v;
     }
 
-    public void draw(int index, TextureRegion region, float x, float y, float w, float h, float rotation){
+    /** Writes the vertices of a rotated sprite into the specified array. */
+    public static void vertices(float[] vertices, int index, TextureRegion region, float x, float y, float w, float h, float rotation, float color){
         float u = region.u;
         float v = region.v2;
         float u2 = region.u2;
@@ -143,10 +162,7 @@ public class IndexedRenderer implements Disposable{
         float x4 = x1 + (x3 - x2);
         float y4 = y3 - (y2 - y1);
 
-        float[] vertices = tmpVerts;
-        float color = this.color;
-
-        int idx = 0;
+        int idx = index * spriteSize;
         vertices[idx++] = x1;
         vertices[idx++] = y1;
         vertices[idx++] = color;
@@ -182,9 +198,7 @@ public class IndexedRenderer implements Disposable{
         vertices[idx++] = y1;
         vertices[idx++] = color;
         vertices[idx++] = u;
-        vertices[idx++] = v;
-
-        mesh.updateVertices(index * vsize * 6, vertices);
+        vertices[idx] = v;
     }
 
     public Mat getTransformMatrix(){
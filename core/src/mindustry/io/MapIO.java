@@ -36,6 +36,12 @@ public class MapIO{
     }
 
     public static Map createMap(Fi file, boolean custom) throws IOException{
+        if(RegionIO.isIndexed(file)){
+            RegionIO.RegionIndex index = RegionIO.readIndex(file);
+            StringMap tags = RegionIO.readTags(file);
+            return new Map(file, tags.getInt("width"), tags.getInt("height"), tags, custom, index.version, Version.build);
+        }
+
         try(InputStream is = new InflaterInputStream(file.read(bufferSize)); CounterInputStream counter = new CounterInputStream(is); DataInputStream stream = new DataInputStream(counter)){
             SaveIO.readHeader(stream);
             int version = stream.readInt();
@@ -47,8 +53,17 @@ public class MapIO{
     }
 
     public static void writeMap(Fi file, Map map) throws IOException{
+        writeMap(file, map, false);
+    }
+
+    /** @param indexed whether to use the region-indexed format, which loads previews and regions much faster, but cannot be read by older versions. */
+    public static void writeMap(Fi file, Map map, boolean indexed) throws IOException{
         try{
-            SaveIO.write(file, map.tags);
+            if(indexed){
+                RegionIO.write(file, map.tags);
+            }else{
+                SaveIO.write(file, map.tags);
+            }
         }catch(Exception e){
             throw new IOException(e);
         }
@@ -63,6 +78,10 @@ public class MapIO{
     }
 
     public static Pixmap generatePreview(Map map) throws IOException{
+        if(RegionIO.isIndexed(map.file)){
+            return RegionIO.readPreview(map);
+        }
+
         map.spawns = 0;
         map.teams.clear();
 
@@ -150,6 +169,50 @@ public class MapIO{
         }
     }
 
+    /** Reads the tiles of a map into a columnar store, without creating a tile object for every cell. */
+    public static PackedTiles readTiles(Map map) throws IOException{
+        if(RegionIO.isIndexed(map.file)){
+            return RegionIO.readTiles(map.file);
+        }
+
+        try(InputStream is = new InflaterInputStream(map.file.read(bufferSize)); CounterInputStream counter = new CounterInputStream(is); DataInputStream stream = new DataInputStream(counter)){
+            SaveIO.readHeader(stream);
+            int version = stream.readInt();
+            SaveVersion ver = SaveIO.getSaveWriter(version);
+            ver.region("meta", stream, counter, ver::readStringMap);
+
+            PackedTiles tiles = new PackedTiles(map.width, map.height);
+            ver.region("content", stream, counter, ver::readContentHeader);
+            ver.region("map", stream, counter, in -> ver.readMap(in, tiles.context()));
+            return tiles;
+        }finally{
+            content.setTemporaryMapper(null);
+        }
+    }
+
+    /** Reads a rectangle of a map. This is only fast for maps in the region-indexed format; others are read in full. */
+    public static PackedTiles readRegion(Map map, int x, int y, int width, int height) throws IOException{
+        if(RegionIO.isIndexed(map.file)){
+            return RegionIO.readRegion(map.file, x, y, width, height);
+        }
+
+        PackedTiles all = readTiles(map), out = new PackedTiles(width, height);
+        for(int ty = 0; ty < height; ty++){
+            for(int tx = 0; tx < width; tx++){
+                if(all.in(x + tx, y + ty)){
+                    int from = all.index(x + tx, y + ty), to = out.index(tx, ty);
+                    out.floors[to] = all.floors[from];
+                    out.overlays[to] = all.overlays[from];
+                    out.blocks[to] = all.blocks[from];
+                    out.teams[to] = all.teams[from];
+                    out.rotations[to] = all.rotations[from];
+                    out.data[to] = all.data[from];
+                }
+            }
+        }
+        return out;
+    }
+
     public static Pixmap generatePreview(Tiles tiles){
         Pixmap pixmap = new Pixmap(tiles.width, tiles.height);
         for(int x = 0; x < pixmap.width; x++){
@@ -0,0 +1,137 @@
+package mindustry.io;
+
+import arc.struct.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Compresses a buffer into a single zlib stream using multiple threads.
+ * The input is split into blocks that are deflated independently, each primed with the preceding {@link #window} bytes as a dictionary;
+ * every block but the last ends on a byte boundary through a sync flush, so the raw outputs can simply be concatenated.
+ * The result is readable by any {@link InflaterInputStream}.
+ */
+public class ParallelDeflate{
+    /** Uncompressed bytes per block. */
+    public static final int blockSize = 128 * 1024;
+    /** Size of the deflate history window. */
+    static final int window = 32 * 1024;
+
+    /** Compresses the first {@code length} bytes of {@code data} and writes them to the stream as zlib data. Does not close the stream. */
+    public static void write(byte[] data, int length, OutputStream out, int level) throws IOException{
+        Seq<ForkJoinTask<byte[]>> tasks = submit(data, 0, length, true, level);
+
+        writeHeader(out, level);
+
+        //checksum the input while the blocks are compressed
+        Adler32 adler = new Adler32();
+        adler.update(data, 0, length);
+
+        for(var task : tasks){
+            out.write(join(task, tasks));
+        }
+
+        writeTrailer(out, (int)adler.getValue());
+    }
+
+    /**
+     * Compresses a range into raw deflate data, without the zlib header and trailer.
+     * Unless {@code last} is set, the output ends on a byte boundary without a final block, so other raw data can follow it.
+     */
+    public static byte[] deflateRaw(byte[] data, int start, int end, boolean last, int level){
+        Seq<ForkJoinTask<byte[]>> tasks = submit(data, start, end, last, level);
+        if(tasks.size == 1) return join(tasks.first(), tasks);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream((end - start) / 2 + 64);
+        for(var task : tasks){
+            byte[] bytes = join(task, tasks);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    /** Writes a zlib header for deflate data with a 32K window and no preset dictionary. */
+    public static void writeHeader(OutputStream out, int level) throws IOException{
+        //the check bits make the header a multiple of 31
+        int flevel = level == Deflater.BEST_SPEED ? 0 : level == Deflater.BEST_COMPRESSION ? 3 : 2;
+        int header = (0x78 << 8) | (flevel << 6);
+        header += 31 - header % 31;
+        out.write(header >> 8);
+        out.write(header & 0xff);
+    }
+
+    /** Writes the zlib trailer: the Adler-32 checksum of all uncompressed data. */
+    public static void writeTrailer(OutputStream out, int adler) throws IOException{
+        out.write(adler >>> 24);
+        out.write(adler >>> 16);
+        out.write(adler >>> 8);
+        out.write(adler);
+    }
+
+    /** @return the Adler-32 checksum of two consecutive pieces of data, given the checksum of each and the length of the second one. */
+    public static int combineAdler(int adler1, int adler2, long length2){
+        final int base = 65521;
+        long rem = length2 % base;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % base;
+        sum1 += (adler2 & 0xffff) + base - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + base - rem;
+        if(sum1 >= base) sum1 -= base;
+        if(sum1 >= base) sum1 -= base;
+        if(sum2 >= (base << 1)) sum2 -= (base << 1);
+        if(sum2 >= base) sum2 -= base;
+        return (int)(sum1 | (sum2 << 16));
+    }
+
+    /** Starts compressing every block of a range; small ranges are compressed on the calling thread once joined. */
+    static Seq<ForkJoinTask<byte[]>> submit(byte[] data, int from, int to, boolean last, int level){
+        int blocks = Math.max((to - from + blockSize - 1) / blockSize, 1);
+
+        Seq<ForkJoinTask<byte[]>> tasks = new Seq<>(blocks);
+        for(int i = 0; i < blocks; i++){
+            int start = from + i * blockSize, end = Math.min(start + blockSize, to);
+            boolean lastBlock = last && i == blocks - 1;
+            tasks.add(blocks == 1 ? ForkJoinTask.adapt(() -> deflate(data, from, start, end, lastBlock, level)) : ForkJoinPool.commonPool().submit(() -> deflate(data, from, start, end, lastBlock, level)));
+        }
+        return tasks;
+    }
+
+    /** A lone block is never submitted, so it runs on the calling thread instead. */
+    static byte[] join(ForkJoinTask<byte[]> task, Seq<ForkJoinTask<byte[]>> tasks){
+        return tasks.size == 1 ? task.invoke() : task.join();
+    }
+
+    /** Deflates [start, end), primed with the data after {@code from} that precedes it. */
+    static byte[] deflate(byte[] data, int from, int start, int end, boolean last, int level){
+        Deflater deflater = new Deflater(level, true);
+        try{
+            if(start > from){
+                int dict = Math.min(window, start - from);
+                deflater.setDictionary(data, start - dict, dict);
+            }
+
+            deflater.setInput(data, start, end - start);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((end - start) / 2 + 64);
+            byte[] buffer = new byte[8192];
+
+            if(last){
+                deflater.finish();
+                while(!deflater.finished()){
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+            }else{
+                //a sync flush ends the output on a byte boundary without marking the final block
+                int written;
+                do{
+                    written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, written);
+                }while(written == buffer.length);
+            }
+
+            return out.toByteArray();
+        }finally{
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package mindustry.io;
+
+import arc.*;
+import arc.files.*;
+import arc.graphics.*;
+import arc.struct.*;
+import arc.util.io.*;
+import mindustry.content.*;
+import mindustry.game.EventType.*;
+import mindustry.io.SaveFileReader.*;
+import mindustry.maps.*;
+import mindustry.world.*;
+import mindustry.world.blocks.storage.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Reads and writes the region-indexed variant of the map/save format.
+ * Unlike regular saves, the file as a whole is not deflated: it starts with an index of independently deflated sections
+ * (meta, content header, preview, entities) followed by the terrain and blocks of every {@link #chunkSize} squared chunk of the map.
+ * This allows metadata, previews and rectangles of the map to be read without inflating the rest of the file.
+ */
+public class RegionIO{
+    /** Region-indexed format header. */
+    public static final byte[] header = {'M', 'S', 'A', 'I'};
+    public static final int chunkSize = 64;
+
+    static final int sectionMeta = 0, sectionContent = 1, sectionPreview = 2, sectionEntities = 3, sections = 4;
+
+    /** @return whether this file uses the region-indexed format. */
+    public static boolean isIndexed(Fi file){
+        try(InputStream stream = file.read(32)){
+            for(byte b : header){
+                if(stream.read() != b){
+                    return false;
+                }
+            }
+            return true;
+        }catch(Throwable e){
+            return false;
+        }
+    }
+
+    /** Writes the current world in the region-indexed format. */
+    public static void write(Fi file, StringMap tags) throws IOException{
+        SaveVersion ver = SaveIO.getVersion();
+        int width = world.width(), height = world.height();
+        int chunksX = chunks(width), chunksY = chunks(height);
+
+        byte[][] data = new byte[sections][];
+        data[sectionMeta] = deflate(out -> ver.writeMeta(out, tags));
+        data[sectionContent] = deflate(ver::writeContentHeader);
+        data[sectionPreview] = deflate(RegionIO::writePreview);
+        data[sectionEntities] = deflate(ver::writeEntities);
+
+        byte[][] terrain = new byte[chunksX * chunksY][], blocks = new byte[chunksX * chunksY][];
+        for(int cy = 0; cy < chunksY; cy++){
+            for(int cx = 0; cx < chunksX; cx++){
+                int x = cx * chunkSize, y = cy * chunkSize, w = Math.min(chunkSize, width - x), h = Math.min(chunkSize, height - y);
+                terrain[cx + cy * chunksX] = deflate(out -> ver.writeTerrain(out, x, y, w, h));
+                blocks[cx + cy * chunksX] = deflate(out -> ver.writeBlocks(out, x, y, w, h));
+            }
+        }
+
+        try(DataOutputStream stream = new DataOutputStream(file.write(false, bufferSize))){
+            stream.write(header);
+            stream.writeInt(ver.version);
+            stream.writeShort(width);
+            stream.writeShort(height);
+            stream.writeShort(chunkSize);
+
+            for(byte[] section : data){
+                stream.writeInt(section.length);
+            }
+            for(int i = 0; i < terrain.length; i++){
+                stream.writeInt(terrain[i].length);
+                stream.writeInt(blocks[i].length);
+            }
+
+            for(byte[] section : data){
+                stream.write(section);
+            }
+            for(byte[] chunk : terrain){
+                stream.write(chunk);
+            }
+            for(byte[] chunk : blocks){
+                stream.write(chunk);
+            }
+        }
+    }
+
+    /** @return the index of a region-indexed file. */
+    public static RegionIndex readIndex(Fi file) throws IOException{
+        try(DataInputStream stream = new DataInputStream(file.read(bufferSize))){
+            return new RegionIndex(stream);
+        }
+    }
+
+    /** Reads only the tags of a region-indexed file. */
+    public static StringMap readTags(Fi file) throws IOException{
+        try(RegionReader reader = new RegionReader(file)){
+            return reader.ver.readStringMap(reader.section(sectionMeta));
+        }
+    }
+
+    /** Reads only the save metadata of a region-indexed file. */
+    public static SaveMeta getMeta(Fi file) throws IOException{
+        try(RegionReader reader = new RegionReader(file)){
+            return reader.ver.getMeta(reader.ver.readStringMap(reader.section(sectionMeta)));
+        }
+    }
+
+    /** Reads the stored preview of a region-indexed map, along with its spawn and core team counts. */
+    public static Pixmap readPreview(Map map) throws IOException{
+        try(RegionReader reader = new RegionReader(map.file)){
+            DataInput in = reader.section(sectionPreview);
+            map.spawns = in.readInt();
+            map.teams.clear();
+            int teams = in.readUnsignedByte();
+            for(int i = 0; i < teams; i++){
+                map.teams.add(in.readUnsignedByte());
+            }
+
+            int width = in.readUnsignedShort(), height = in.readUnsignedShort();
+            Pixmap pixmap = new Pixmap(width, height);
+            for(int y = 0; y < height; y++){
+                for(int x = 0; x < width; x++){
+                    pixmap.set(x, y, in.readInt());
+                }
+            }
+            return pixmap;
+        }
+    }
+
+    /** Loads a region-indexed file into the specified context, just like {@link SaveIO#load(InputStream, WorldContext)}. */
+    public static void load(Fi file, WorldContext context) throws IOException{
+        try(RegionReader reader = new RegionReader(file)){
+            logic.reset();
+            SaveVersion ver = reader.ver;
+            ver.readMeta(reader.section(sectionMeta));
+            ver.readContentHeader(reader.section(sectionContent));
+            reader.skip(sectionPreview);
+
+            //entities are stored before the map here, so they are kept in memory until the map is read
+            DataInput entities = reader.section(sectionEntities);
+            ver.readEntityMapping(entities);
+            readMap(reader, context);
+            ver.readTeamBlocks(entities);
+            ver.readWorldEntities(entities);
+            Events.fire(new SaveLoadEvent());
+        }finally{
+            world.setGenerating(false);
+            content.setTemporaryMapper(null);
+        }
+    }
+
+    /** Reads every tile of a region-indexed file into a columnar store. */
+    public static PackedTiles readTiles(Fi file) throws IOException{
+        try(RegionReader reader = new RegionReader(file)){
+            RegionIndex index = reader.index;
+            PackedTiles tiles = new PackedTiles(index.width, index.height);
+            reader.skip(sectionMeta);
+            reader.ver.readContentHeader(reader.section(sectionContent));
+            reader.skip(sectionPreview);
+            reader.skip(sectionEntities);
+            readMap(reader, tiles.context());
+            return tiles;
+        }finally{
+            content.setTemporaryMapper(null);
+        }
+    }
+
+    /**
+     * Reads a rectangle of a region-indexed file. Only the chunks intersecting the rectangle are inflated.
+     * Block IDs, teams and rotations are read, but building data is skipped.
+     */
+    public static PackedTiles readRegion(Fi file, int x, int y, int width, int height) throws IOException{
+        try(RegionReader reader = new RegionReader(file)){
+            RegionIndex index = reader.index;
+            PackedTiles tiles = new PackedTiles(width, height);
+            reader.skip(sectionMeta);
+            reader.ver.readContentHeader(reader.section(sectionContent));
+
+            int cx1 = Math.max(x, 0) / chunkSize, cy1 = Math.max(y, 0) / chunkSize;
+            int cx2 = Math.min(x + width - 1, index.width - 1) / chunkSize, cy2 = Math.min(y + height - 1, index.height - 1) / chunkSize;
+
+            //chunks are stored row by row, so reading them in this order only ever skips forward
+            for(int cy = cy1; cy <= cy2; cy++){
+                for(int cx = cx1; cx <= cx2; cx++){
+                    readPackedTerrain(reader.terrain(cx + cy * index.chunksX), index, cx, cy, tiles, x, y);
+                }
+            }
+            for(int cy = cy1; cy <= cy2; cy++){
+                for(int cx = cx1; cx <= cx2; cx++){
+                    readPackedBlocks(reader.blocks(cx + cy * index.chunksX), reader.ver, index, cx, cy, tiles, x, y);
+                }
+            }
+            return tiles;
+        }finally{
+            content.setTemporaryMapper(null);
+        }
+    }
+
+    static void readMap(RegionReader reader, WorldContext context) throws IOException{
+        RegionIndex index = reader.index;
+        SaveVersion ver = reader.ver;
+        boolean generating = context.isGenerating();
+
+        if(!generating) context.begin();
+        try{
+            context.resize(index.width, index.height);
+
+            //every tile must exist before blocks are placed, as multiblocks reach across chunks
+            for(int i = 0; i < index.chunks(); i++){
+                DataInput in = reader.terrain(i);
+                int cx = i % index.chunksX, cy = i / index.chunksX;
+                ver.readTerrain(in, context, cx * chunkSize, cy * chunkSize, index.chunkWidth(cx), index.chunkHeight(cy));
+            }
+
+            for(int i = 0; i < index.chunks(); i++){
+                DataInput in = reader.blocks(i);
+                int cx = i % index.chunksX, cy = i / index.chunksX;
+                ver.readBlocks(in, context, cx * chunkSize, cy * chunkSize, index.chunkWidth(cx), index.chunkHeight(cy), index.width);
+            }
+        }finally{
+            if(!generating) context.end();
+        }
+    }
+
+    static void readPackedTerrain(DataInput stream, RegionIndex index, int cx, int cy, PackedTiles tiles, int ox, int oy) throws IOException{
+        int width = index.chunkWidth(cx), height = index.chunkHeight(cy);
+        for(int i = 0; i < width * height; i++){
+            short floorid = stream.readShort();
+            short oreid = stream.readShort();
+            int consecutives = stream.readUnsignedByte();
+            //map IDs through the content header of the file
+            Block floor = content.block(floorid), overlay = content.block(oreid);
+            floorid = floor == null || floor == Blocks.air ? Blocks.stone.id : floor.id;
+            oreid = overlay == null ? Blocks.air.id : overlay.id;
+
+            for(int j = i; j < i + 1 + consecutives; j++){
+                int x = cx * chunkSize + j % width - ox, y = cy * chunkSize + j / width - oy;
+                if(tiles.in(x, y)){
+                    int index2 = tiles.index(x, y);
+                    tiles.floors[index2] = floorid;
+                    tiles.overlays[index2] = oreid;
+                }
+            }
+
+            i += consecutives;
+        }
+    }
+
+    static void readPackedBlocks(DataInput stream, SaveVersion ver, RegionIndex index, int cx, int cy, PackedTiles tiles, int ox, int oy) throws IOException{
+        int width = index.chunkWidth(cx), height = index.chunkHeight(cy);
+        for(int i = 0; i < width * height; i++){
+            Block block = content.block(stream.readShort());
+            if(block == null) block = Blocks.air;
+            byte packedCheck = stream.readByte();
+            boolean hadEntity = (packedCheck & 1) != 0;
+            boolean hadData = (packedCheck & 2) != 0;
+            byte team = 0, rotation = 0, data = 0;
+            int consecutives = 0;
+
+            if(hadEntity){
+                if(stream.readBoolean()){
+                    team = stream.readByte();
+                    rotation = stream.readByte();
+                    ver.skipChunk(stream, true);
+                }
+            }else if(hadData){
+                data = stream.readByte();
+            }else{
+                consecutives = stream.readUnsignedByte();
+            }
+
+            for(int j = i; j < i + 1 + consecutives; j++){
+                int x = cx * chunkSize + j % width - ox, y = cy * chunkSize + j / width - oy;
+                if(tiles.in(x, y)){
+                    int index2 = tiles.index(x, y);
+                    tiles.blocks[index2] = block.id;
+                    tiles.teams[index2] = team;
+                    tiles.rotations[index2] = rotation;
+                    tiles.data[index2] = data;
+                }
+            }
+
+            i += consecutives;
+        }
+    }
+
+    static void writePreview(DataOutput stream) throws IOException{
+        int spawns = 0;
+        IntSet teams = new IntSet();
+        for(Tile tile : world.tiles){
+            if(tile.overlay() == Blocks.spawn) spawns++;
+            if(tile.build instanceof CoreBlock.CoreBuild && tile.isCenter()) teams.add(tile.build.team.id);
+        }
+
+        stream.writeInt(spawns);
+        stream.writeByte(teams.size);
+        for(var it = teams.iterator(); it.hasNext;){
+            stream.writeByte(it.next());
+        }
+
+        Pixmap pixmap = MapIO.generatePreview(world.tiles);
+        stream.writeShort(pixmap.width);
+        stream.writeShort(pixmap.height);
+        for(int y = 0; y < pixmap.height; y++){
+            for(int x = 0; x < pixmap.width; x++){
+                stream.writeInt(pixmap.get(x, y));
+            }
+        }
+        pixmap.dispose();
+    }
+
+    static byte[] deflate(IORunner<DataOutput> runner) throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(new FastDeflaterOutputStream(bytes))){
+            runner.accept(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    static int chunks(int size){
+        return (size + chunkSize - 1) / chunkSize;
+    }
+
+    /** The header of a region-indexed file: map size and the compressed length of every section and chunk. */
+    public static class RegionIndex{
+        public final int version, width, height, chunkSize, chunksX, chunksY;
+        final int[] sectionLengths = new int[sections];
+        final int[] terrainLengths, blockLengths;
+        /** size of the header and index, in bytes. */
+        final long start;
+
+        RegionIndex(DataInputStream stream) throws IOException{
+            byte[] bytes = new byte[header.length];
+            stream.readFully(bytes);
+            if(!Arrays.equals(bytes, header)){
+                throw new IOException("Incorrect header! Expecting: " + Arrays.toString(header) + "; Actual: " + Arrays.toString(bytes));
+            }
+
+            version = stream.readInt();
+            width = stream.readUnsignedShort();
+            height = stream.readUnsignedShort();
+            chunkSize = stream.readUnsignedShort();
+            if(chunkSize != RegionIO.chunkSize) throw new IOException("Unsupported chunk size: " + chunkSize);
+            chunksX = chunks(width);
+            chunksY = chunks(height);
+
+            for(int i = 0; i < sections; i++){
+                sectionLengths[i] = stream.readInt();
+            }
+
+            terrainLengths = new int[chunksX * chunksY];
+            blockLengths = new int[chunksX * chunksY];
+            for(int i = 0; i < terrainLengths.length; i++){
+                terrainLengths[i] = stream.readInt();
+                blockLengths[i] = stream.readInt();
+            }
+
+            start = header.length + 4 + 2 * 3 + 4L * sections + 8L * terrainLengths.length;
+        }
+
+        public int chunks(){
+            return chunksX * chunksY;
+        }
+
+        int chunkWidth(int cx){
+            return Math.min(chunkSize, width - cx * chunkSize);
+        }
+
+        int chunkHeight(int cy){
+            return Math.min(chunkSize, height - cy * chunkSize);
+        }
+    }
+
+    /** Reads sections of a region-indexed file in file order, skipping everything in between. */
+    static class RegionReader implements Closeable{
+        final DataInputStream stream;
+        final RegionIndex index;
+        final SaveVersion ver;
+        long position;
+
+        RegionReader(Fi file) throws IOException{
+            stream = new DataInputStream(file.read(bufferSize));
+            index = new RegionIndex(stream);
+            ver = SaveIO.getSaveWriter(index.version);
+            if(ver == null) throw new IOException("Unknown save version: " + index.version);
+            position = index.start;
+        }
+
+        DataInput section(int section) throws IOException{
+            long offset = index.start;
+            for(int i = 0; i < section; i++) offset += index.sectionLengths[i];
+            return read(offset, index.sectionLengths[section]);
+        }
+
+        void skip(int section) throws IOException{
+            long offset = index.start;
+            for(int i = 0; i <= section; i++) offset += index.sectionLengths[i];
+            seek(offset);
+        }
+
+        DataInput terrain(int chunk) throws IOException{
+            long offset = sectionsEnd();
+            for(int i = 0; i < chunk; i++) offset += index.terrainLengths[i];
+            return read(offset, index.terrainLengths[chunk]);
+        }
+
+        DataInput blocks(int chunk) throws IOException{
+            long offset = sectionsEnd();
+            for(int length : index.terrainLengths) offset += length;
+            for(int i = 0; i < chunk; i++) offset += index.blockLengths[i];
+            return read(offset, index.blockLengths[chunk]);
+        }
+
+        long sectionsEnd(){
+            long offset = index.start;
+            for(int length : index.sectionLengths) offset += length;
+            return offset;
+        }
+
+        DataInput read(long offset, int length) throws IOException{
+            seek(offset);
+            byte[] bytes = new byte[length];
+            stream.readFully(bytes);
+            position += length;
+            return new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)));
+        }
+
+        void seek(long offset) throws IOException{
+            if(offset < position) throw new IOException("Sections must be read in file order.");
+            while(position < offset){
+                long skipped = stream.skip(offset - position);
+                if(skipped <= 0){
+                    stream.readByte();
+                    skipped = 1;
+                }
+                position += skipped;
+            }
+        }
+
+        @Override
+        public void close() throws IOException{
+            stream.close();
+        }
+    }
+}
@@ -2,8 +2,10 @@ package mindustry.io;
 
 import arc.*;
 import arc.files.*;
+import arc.func.*;
 import arc.struct.*;
 import arc.util.*;
+import arc.util.async.*;
 import arc.util.io.*;
 import mindustry.*;
 import mindustry.game.EventType.*;
@@ -23,6 +25,9 @@ public class SaveIO{
     public static final IntMap<SaveVersion> versions = new IntMap<>();
     public static final Seq<SaveVersion> versionArray = Seq.with(new Save1(), new Save2(), new Save3(), new Save4(), new Save5());
 
+    private static final AsyncExecutor saveExecutor = new AsyncExecutor(1);
+    private static @Nullable AsyncResult<Void> pendingSave;
+
     static{
         for(SaveVersion version : versionArray){
             versions.put(version.version, version);
@@ -38,6 +43,7 @@ public class SaveIO{
     }
 
     public static void save(Fi file){
+        awaitSave();
         boolean exists = file.exists();
         if(exists) file.moveTo(backupFileFor(file));
         try{
@@ -48,6 +54,49 @@ public class SaveIO{
         }
     }
 
+    /**
+     * Saves without blocking the game for compression or file IO.
+     * The world is serialized into memory immediately, as its state keeps changing; the rest happens on a background thread.
+     * The file is only replaced once it has been fully written, and the previous version is kept as a backup like in {@link #save(Fi)}.
+     * @param done called on the main thread once the file is written.
+     * @param failed called on the main thread if saving failed; the previous file is left untouched.
+     */
+    public static void saveAsync(Fi file, Runnable done, Cons<Throwable> failed){
+        ReusableByteOutStream bytes;
+        try{
+            bytes = serialize(null);
+        }catch(Throwable e){
+            failed.get(e);
+            return;
+        }
+
+        awaitSave();
+        pendingSave = saveExecutor.submit(() -> {
+            Fi temp = tempFileFor(file);
+            try{
+                compress(bytes, temp);
+                if(file.exists()) file.moveTo(backupFileFor(file));
+                temp.moveTo(file);
+                Core.app.post(done);
+            }catch(Throwable e){
+                temp.delete();
+                Core.app.post(() -> failed.get(e));
+            }
+        });
+    }
+
+    /** Blocks until the last asynchronous save has been written. */
+    public static void awaitSave(){
+        if(pendingSave != null){
+            try{
+                pendingSave.get();
+            }catch(Throwable e){
+                Log.err(e);
+            }
+            pendingSave = null;
+        }
+    }
+
     public static DataInputStream getStream(Fi file){
         return new DataInputStream(new InflaterInputStream(file.read(bufferSize)));
     }
@@ -57,6 +106,15 @@ public class SaveIO{
     }
 
     public static boolean isSaveValid(Fi file){
+        if(RegionIO.isIndexed(file)){
+            try{
+                RegionIO.getMeta(file);
+                return true;
+            }catch(Throwable e){
+                return false;
+            }
+        }
+
         try(DataInputStream stream = new DataInputStream(new InflaterInputStream(file.read(bufferSize)))){
             return isSaveValid(stream);
         }catch(Throwable e){
@@ -75,9 +133,16 @@ public class SaveIO{
 
     public static SaveMeta getMeta(Fi file){
         try{
+            if(RegionIO.isIndexed(file)) return RegionIO.getMeta(file);
             return getMeta(getStream(file));
         }catch(Throwable e){
             Log.err(e);
+            Fi backup = backupFileFor(file);
+            try{
+                if(RegionIO.isIndexed(backup)) return RegionIO.getMeta(backup);
+            }catch(IOException other){
+                throw new RuntimeException(other);
+            }
             return getMeta(getBackupStream(file));
         }
     }
@@ -103,8 +168,44 @@ public class SaveIO{
         return file.sibling(file.name() + "-backup." + file.extension());
     }
 
+    /**
+     * @return the file that {@link #saveAsync(Fi, Runnable, Cons)} writes to before replacing the save.
+     * Its name neither starts like the save's nor ends in its extension, so it is never taken for a save itself.
+     */
+    public static Fi tempFileFor(Fi file){
+        return file.sibling("." + file.name() + ".tmp");
+    }
+
+    /** Deletes the temporary files of asynchronous saves that were never finished, e.g. due to a crash. */
+    public static void deleteTempFiles(Fi directory){
+        awaitSave();
+        for(Fi file : directory.list()){
+            if(file.name().startsWith(".") && file.name().endsWith(".tmp")){
+                file.delete();
+            }
+        }
+    }
+
+    /** Serializes the world into memory first, then compresses it on multiple threads; see {@link ParallelDeflate}. */
     public static void write(Fi file, StringMap tags){
-        write(new FastDeflaterOutputStream(file.write(false, bufferSize)), tags);
+        try{
+            compress(serialize(tags), file);
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** @return the uncompressed save data of the current world. */
+    static ReusableByteOutStream serialize(@Nullable StringMap tags){
+        ReusableByteOutStream bytes = new ReusableByteOutStream();
+        write((OutputStream)bytes, tags);
+        return bytes;
+    }
+
+    static void compress(ReusableByteOutStream bytes, Fi file) throws IOException{
+        try(OutputStream out = file.write(false, bufferSize)){
+            ParallelDeflate.write(bytes.getBytes(), bytes.size(), out, Deflater.BEST_SPEED);
+        }
     }
 
     public static void write(Fi file){
@@ -134,20 +235,34 @@ public class SaveIO{
     }
 
     public static void load(Fi file, WorldContext context) throws SaveException{
+        awaitSave();
         try{
             //try and load; if any exception at all occurs
-            load(new InflaterInputStream(file.read(bufferSize)), context);
+            loadAny(file, context);
         }catch(SaveException e){
             Log.err(e);
             Fi backup = file.sibling(file.name() + "-backup." + file.extension());
             if(backup.exists()){
-                load(new InflaterInputStream(backup.read(bufferSize)), context);
+                loadAny(backup, context);
             }else{
                 throw new SaveException(e.getCause());
             }
         }
     }
 
+    /** Loads a file in either the regular or the region-indexed format. */
+    private static void loadAny(Fi file, WorldContext context) throws SaveException{
+        if(RegionIO.isIndexed(file)){
+            try{
+                RegionIO.load(file, context);
+            }catch(Throwable e){
+                throw new SaveException(e);
+            }
+        }else{
+            load(new InflaterInputStream(file.read(bufferSize)), context);
+        }
+    }
+
     /** Loads from a deflated (!) input stream. */
     public static void load(InputStream is, WorldContext context) throws SaveException{
         try(CounterInputStream counter = new CounterInputStream(is); DataInputStream stream = new DataInputStream(counter)){
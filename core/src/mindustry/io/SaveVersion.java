@@ -36,7 +36,10 @@ public abstract class SaveVersion extends SaveFileReader{
 
     public SaveMeta getMeta(DataInput stream) throws IOException{
         stream.readInt(); //length of data, doesn't matter here
-        StringMap map = readStringMap(stream);
+        return getMeta(readStringMap(stream));
+    }
+
+    public SaveMeta getMeta(StringMap map){
         return new SaveMeta(
             map.getInt("version"),
             map.getLong("saved"),
@@ -289,6 +292,153 @@ public abstract class SaveVersion extends SaveFileReader{
         }
     }
 
+    /**
+     * Writes the floors and overlays of a rectangle of tiles, in the run-length encoding of {@link #writeMap(DataOutput)}.
+     * Used for the chunks of the region-indexed format; see {@link RegionIO}.
+     */
+    public void writeTerrain(DataOutput stream, int x, int y, int width, int height) throws IOException{
+        for(int i = 0; i < width * height; i++){
+            Tile tile = world.rawTile(x + i % width, y + i / width);
+            stream.writeShort(tile.floorID());
+            stream.writeShort(tile.overlayID());
+            int consecutives = 0;
+
+            for(int j = i + 1; j < width * height && consecutives < 255; j++){
+                Tile nextTile = world.rawTile(x + j % width, y + j / width);
+
+                if(nextTile.floorID() != tile.floorID() || nextTile.overlayID() != tile.overlayID()){
+                    break;
+                }
+
+                consecutives++;
+            }
+
+            stream.writeByte(consecutives);
+            i += consecutives;
+        }
+    }
+
+    /**
+     * Writes the blocks of a rectangle of tiles, like {@link #writeMap(DataOutput)}.
+     * Building centers additionally store their team and rotation, so that they can be read without the building data.
+     */
+    public void writeBlocks(DataOutput stream, int x, int y, int width, int height) throws IOException{
+        for(int i = 0; i < width * height; i++){
+            Tile tile = world.rawTile(x + i % width, y + i / width);
+            stream.writeShort(tile.blockID());
+
+            boolean savedata = tile.block().saveData;
+            byte packed = (byte)((tile.build != null ? 1 : 0) | (savedata ? 2 : 0));
+
+            stream.writeByte(packed);
+
+            if(tile.build != null){
+                if(tile.isCenter()){
+                    stream.writeBoolean(true);
+                    stream.writeByte(tile.build.team.id);
+                    stream.writeByte(tile.build.rotation);
+                    writeChunk(stream, true, out -> {
+                        out.writeByte(tile.build.version());
+                        tile.build.writeAll(Writes.get(out));
+                    });
+                }else{
+                    stream.writeBoolean(false);
+                }
+            }else if(savedata){
+                stream.writeByte(tile.data);
+            }else{
+                int consecutives = 0;
+
+                for(int j = i + 1; j < width * height && consecutives < 255; j++){
+                    Tile nextTile = world.rawTile(x + j % width, y + j / width);
+
+                    if(nextTile.blockID() != tile.blockID()){
+                        break;
+                    }
+
+                    consecutives++;
+                }
+
+                stream.writeByte(consecutives);
+                i += consecutives;
+            }
+        }
+    }
+
+    /** Reads terrain written by {@link #writeTerrain(DataOutput, int, int, int, int)}, creating the tiles of the rectangle. */
+    public void readTerrain(DataInput stream, WorldContext context, int x, int y, int width, int height) throws IOException{
+        for(int i = 0; i < width * height; i++){
+            short floorid = stream.readShort();
+            short oreid = stream.readShort();
+            int consecutives = stream.readUnsignedByte();
+            if(content.block(floorid) == Blocks.air) floorid = Blocks.stone.id;
+
+            for(int j = i; j < i + 1 + consecutives; j++){
+                context.create(x + j % width, y + j / width, floorid, oreid, (short)0);
+            }
+
+            i += consecutives;
+        }
+    }
+
+    /**
+     * Reads blocks written by {@link #writeBlocks(DataOutput, int, int, int, int)}.
+     * Every tile of the map must already exist, as multiblocks may reach into neighbouring rectangles.
+     */
+    public void readBlocks(DataInput stream, WorldContext context, int x, int y, int width, int height, int mapWidth) throws IOException{
+        for(int i = 0; i < width * height; i++){
+            Block block = content.block(stream.readShort());
+            Tile tile = context.tile(x + i % width + (y + i / width) * mapWidth);
+            if(block == null) block = Blocks.air;
+            boolean isCenter = true;
+            byte packedCheck = stream.readByte();
+            boolean hadEntity = (packedCheck & 1) != 0;
+            boolean hadData = (packedCheck & 2) != 0;
+
+            if(hadEntity){
+                isCenter = stream.readBoolean();
+            }
+
+            if(isCenter){
+                tile.setBlock(block);
+            }
+
+            if(hadEntity){
+                if(isCenter){
+                    //team and rotation are also stored in the building data
+                    stream.readByte();
+                    stream.readByte();
+
+                    if(block.hasBuilding()){
+                        try{
+                            readChunk(stream, true, in -> {
+                                byte revision = in.readByte();
+                                tile.build.readAll(Reads.get(in), revision);
+                            });
+                        }catch(Throwable e){
+                            throw new IOException("Failed to read tile entity of block: " + block, e);
+                        }
+                    }else{
+                        skipChunk(stream, true);
+                    }
+
+                    context.onReadBuilding();
+                }
+            }else if(hadData){
+                tile.setBlock(block);
+                tile.data = stream.readByte();
+            }else{
+                int consecutives = stream.readUnsignedByte();
+
+                for(int j = i + 1; j < i + 1 + consecutives; j++){
+                    context.tile(x + j % width + (y + j / width) * mapWidth).setBlock(block);
+                }
+
+                i += consecutives;
+            }
+        }
+    }
+
     public void writeTeamBlocks(DataOutput stream) throws IOException{
         //write team data with entities.
         Seq<TeamData> data = state.teams.getActive().copy();
@@ -198,7 +198,9 @@ public class Maps{
 
             //create map, write it, etc etc etc
             Map map = new Map(file, world.width(), world.height(), tags, true);
-            MapIO.writeMap(file, map);
+            //the region-indexed format loads previews without reading every tile, but map files are uploaded to the workshop as-is
+            //and older clients cannot read it, so it is opt-in
+            MapIO.writeMap(file, map, Core.settings.getBool("indexedmaps", false));
 
             if(!headless){
                 //reset attributes
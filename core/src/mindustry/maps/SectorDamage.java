@@ -189,8 +189,7 @@ public class SectorDamage{
         Seq<Tile> path = new Seq<>();
         boolean found = false;
 
-        if(field != null && field.weights != null){
-            int[][] weights = field.weights;
+        if(field != null && field.ready()){
             int count = 0;
             Tile current = start;
             while(count < world.width() * world.height()){
@@ -200,8 +199,9 @@ public class SectorDamage{
                     int nx = cx + p.x, ny = cy + p.y;
 
                     Tile other = world.tile(nx, ny);
-                    if(other != null && weights[nx][ny] < minCost && weights[nx][ny] != -1){
-                       minCost = weights[nx][ny];
+                    int weight = field.weight(nx, ny);
+                    if(other != null && weight < minCost && weight != -1){
+                       minCost = weight;
                        current = other;
                     }
                 }
@@ -0,0 +1,193 @@
+package mindustry.maps.filters;
+
+import arc.struct.*;
+import mindustry.content.*;
+import mindustry.maps.filters.GenerateFilter.*;
+import mindustry.world.*;
+import mindustry.world.blocks.environment.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Applies a chain of filters to a pair of packed tile buffers.
+ * Each filter writes to the back buffer, after which the two are swapped.
+ * Buffered filters read from the front buffer, which is never modified during the pass, so the map can be split into
+ * row bands that are processed in parallel: neighbourhood reads simply reach into the (shared, read-only) rows of other bands,
+ * and the result is identical to a serial pass.
+ * Unbuffered filters read from the back buffer instead, matching the in-place semantics they have always had;
+ * those that read other tiles (see {@link GenerateFilter#isSequential()}) are therefore applied serially, in index order.
+ * Post filters operate on real tiles and are not supported here; see {@link #apply(Tiles, Seq)}.
+ */
+public class FilterPipeline{
+    /** Rows processed by a single parallel task. */
+    public static final int bandHeight = 32;
+
+    /** Whether to split each pass across the fork-join pool. */
+    public boolean parallel = true;
+
+    private PackedTiles front, back;
+    /** How many map tiles each buffer cell stands for, per axis. */
+    private int scaling = 1;
+    /** Size of the map that the buffers represent. */
+    private int mapWidth, mapHeight;
+
+    /** Packs the specified tiles into the front buffer. Buffers are reused if the size matches. */
+    public PackedTiles begin(Tiles tiles){
+        return begin(tiles, 1);
+    }
+
+    /**
+     * Packs every n-th tile of the specified tiles into the front buffer, for downscaled previews.
+     * Filters still see map coordinates; reads are mapped back onto the nearest buffer cell.
+     */
+    public PackedTiles begin(Tiles tiles, int scaling){
+        int width = tiles.width / scaling, height = tiles.height / scaling;
+        ensure(width, height);
+        this.scaling = scaling;
+        this.mapWidth = tiles.width;
+        this.mapHeight = tiles.height;
+
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                front.set(front.index(x, y), tiles.getn(x * scaling, y * scaling));
+            }
+        }
+        return front;
+    }
+
+    /** Copies the specified packed tiles into the front buffer. Buffers are reused if the size matches. */
+    public PackedTiles begin(PackedTiles source){
+        return begin(source, 1, source.width, source.height);
+    }
+
+    /** Copies the specified packed tiles, which represent a map of the given size at the given scaling, into the front buffer. */
+    public PackedTiles begin(PackedTiles source, int scaling, int mapWidth, int mapHeight){
+        ensure(source.width, source.height);
+        this.scaling = scaling;
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+        front.set(source);
+        return front;
+    }
+
+    /** @return the current output of the pipeline. */
+    public PackedTiles result(){
+        return front;
+    }
+
+    /** Applies a per-tile filter to the front buffer. Post filters are ignored. */
+    public void apply(GenerateFilter filter){
+        if(filter.isPost()) return;
+
+        PackedTiles src = front, dst = back;
+        int height = src.height;
+
+        //buildings and teams are never changed by filters
+        dst.set(src);
+
+        //unbuffered filters are applied in place, and see the tiles that were already written during this pass
+        PackedTiles read = filter.isBuffered() ? src : dst;
+
+        if(parallel && height > bandHeight && !filter.isSequential()){
+            Seq<ForkJoinTask<?>> tasks = new Seq<>();
+            for(int y = 0; y < height; y += bandHeight){
+                int from = y, to = Math.min(y + bandHeight, height);
+                tasks.add(ForkJoinPool.commonPool().submit(() -> applyRows(filter, read, dst, from, to)));
+            }
+
+            for(var task : tasks){
+                task.join();
+            }
+        }else{
+            applyRows(filter, read, dst, 0, height);
+        }
+
+        front = dst;
+        back = src;
+    }
+
+    /** Applies every filter in order to the specified tiles. Consecutive per-tile filters are run on packed buffers. */
+    public void apply(Tiles tiles, Seq<GenerateFilter> filters){
+        boolean packed = false;
+
+        for(GenerateFilter filter : filters){
+            if(filter.isPost()){
+                if(packed){
+                    write(tiles);
+                    packed = false;
+                }
+
+                GenerateInput input = new GenerateInput();
+                input.begin(tiles.width, tiles.height, tiles::getn);
+                filter.apply(tiles, input);
+            }else{
+                if(!packed){
+                    begin(tiles);
+                    packed = true;
+                }
+
+                apply(filter);
+            }
+        }
+
+        if(packed){
+            write(tiles);
+        }
+    }
+
+    /** Writes the terrain of the front buffer back into the specified tiles. Only changed tiles are touched. */
+    public void write(Tiles tiles){
+        PackedTiles src = front;
+        if(src.width != tiles.width || src.height != tiles.height) throw new IllegalArgumentException("Cannot write a scaled buffer back into tiles.");
+
+        for(int i = 0; i < tiles.width * tiles.height; i++){
+            Tile tile = tiles.geti(i);
+            Block block = src.block(i);
+            Floor floor = src.floor(i), overlay = src.overlay(i);
+
+            if(tile.floor() != floor){
+                tile.setFloor(floor);
+            }
+
+            if(tile.overlay() != overlay){
+                tile.setOverlay(overlay);
+            }
+
+            if(tile.block() != block && !tile.block().synthetic() && !block.synthetic()){
+                tile.setBlock(block);
+            }
+        }
+    }
+
+    void applyRows(GenerateFilter filter, PackedTiles src, PackedTiles dst, int from, int to){
+        //one input and read tile per task, since neither is thread-safe
+        GenerateInput in = new GenerateInput();
+        CachedTile tile = new CachedTile();
+        int scl = scaling, width = src.width, height = src.height;
+        in.begin(mapWidth, mapHeight, (x, y) -> src.read(src.index(Math.min(x / scl, width - 1), Math.min(y / scl, height - 1)), tile));
+
+        for(int y = from; y < to; y++){
+            for(int x = 0; x < src.width; x++){
+                int i = src.index(x, y);
+                Block current = src.block(i);
+
+                in.set(x * scl, y * scl, current, src.floor(i), src.overlay(i));
+                filter.apply(in);
+
+                Floor floor = in.floor.asFloor();
+                dst.set(i,
+                    current.synthetic() || in.block.synthetic() ? current : in.block,
+                    floor,
+                    !floor.hasSurface() && in.overlay.asFloor().needsSurface ? Blocks.air : in.overlay
+                );
+            }
+        }
+    }
+
+    private void ensure(int width, int height){
+        if(front == null || front.width != width || front.height != height){
+            front = new PackedTiles(width, height);
+            back = new PackedTiles(width, height);
+        }
+    }
+}
@@ -2,60 +2,24 @@ package mindustry.maps.filters;
 
 import arc.*;
 import arc.math.*;
+import arc.math.geom.*;
 import arc.scene.ui.*;
+import arc.struct.*;
 import arc.util.*;
 import arc.util.noise.*;
-import mindustry.*;
 import mindustry.annotations.Annotations.*;
-import mindustry.content.*;
 import mindustry.gen.*;
 import mindustry.world.*;
 
 public abstract class GenerateFilter{
     public int seed = 0;
 
+    /** Applies this filter to every tile. Post filters override this to operate on the tiles directly. */
     public void apply(Tiles tiles, GenerateInput in){
-
-        if(isBuffered()){
-            //buffer of tiles used, each tile packed into a long struct
-            long[] buffer = new long[tiles.width * tiles.height];
-
-            for(int i = 0; i < tiles.width * tiles.height; i++){
-                Tile tile = tiles.geti(i);
-
-                in.set(tile.x, tile.y, tile.block(), tile.floor(), tile.overlay());
-                apply(in);
-
-                buffer[i] = PackTile.get(in.block.id, in.floor.id, in.overlay.id);
-            }
-
-            //write to buffer
-            for(int i = 0; i < tiles.width * tiles.height; i++){
-                Tile tile = tiles.geti(i);
-                long b = buffer[i];
-
-                Block block = Vars.content.block(PackTile.block(b)), floor = Vars.content.block(PackTile.floor(b)), overlay = Vars.content.block(PackTile.overlay(b));
-
-                tile.setFloor(floor.asFloor());
-                tile.setOverlay(!floor.asFloor().hasSurface() && overlay.asFloor().needsSurface ? Blocks.air : overlay);
-
-                if(!tile.block().synthetic() && !block.synthetic()){
-                    tile.setBlock(block);
-                }
-            }
-        }else{
-            for(Tile tile : tiles){
-                in.set(tile.x, tile.y, tile.block(), tile.floor(), tile.overlay());
-                apply(in);
-
-                tile.setFloor(in.floor.asFloor());
-                tile.setOverlay(!in.floor.asFloor().hasSurface() && in.overlay.asFloor().needsSurface ? Blocks.air : in.overlay);
-
-                if(!tile.block().synthetic() && !in.block.synthetic()){
-                    tile.setBlock(in.block);
-                }
-            }
-        }
+        FilterPipeline pipeline = new FilterPipeline();
+        pipeline.begin(tiles);
+        pipeline.apply(this);
+        pipeline.write(tiles);
     }
 
     /** @return a new array of options for configuring this filter */
@@ -92,6 +56,14 @@ public abstract class GenerateFilter{
         return false;
     }
 
+    /**
+     * @return whether this unbuffered filter reads tiles other than the one it is applied to.
+     * Such a filter sees the tiles already written during its own pass, so it can only be applied serially.
+     */
+    public boolean isSequential(){
+        return false;
+    }
+
     /** @return whether this filter can *only* be used while generating the map, e.g. is not undoable. */
     public boolean isPost(){
         return false;
@@ -119,7 +91,13 @@ public abstract class GenerateFilter{
         return Mathf.randomSeed(Pack.longInt(x, y + seed));
     }
 
-    /** an input for generating at a certain coordinate. should only be instantiated once. */
+    /** thread-safe variant of {@link #chance(int, int)}; uses the random source of the input. */
+    protected float chance(GenerateInput in, int x, int y){
+        in.rand.setSeed(Pack.longInt(x, y + seed));
+        return in.rand.nextFloat();
+    }
+
+    /** an input for generating at a certain coordinate. should only be instantiated once per thread. */
     public static class GenerateInput{
 
         /** input size parameters */
@@ -130,6 +108,11 @@ public abstract class GenerateFilter{
 
         TileProvider buffer;
 
+        /** scratch state for filters. kept per input, so that inputs on different threads share nothing. */
+        final IntSeq ints1 = new IntSeq(), ints2 = new IntSeq();
+        final Vec2 v1 = new Vec2(), v2 = new Vec2(), v3 = new Vec2();
+        final Rand rand = new Rand();
+
         public void set(int x, int y, Block block, Block floor, Block overlay){
             this.floor = floor;
             this.block = block;
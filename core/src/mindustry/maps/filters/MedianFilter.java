@@ -9,8 +9,6 @@ import mindustry.world.*;
 import static mindustry.Vars.*;
 
 public class MedianFilter extends GenerateFilter{
-    private static final IntSeq blocks = new IntSeq(), floors = new IntSeq();
-
     float radius = 2;
     float percentile = 0.5f;
 
@@ -35,6 +33,7 @@ public class MedianFilter extends GenerateFilter{
     @Override
     public void apply(GenerateInput in){
         int rad = (int)radius;
+        IntSeq blocks = in.ints1, floors = in.ints2;
         blocks.clear();
         floors.clear();
         for(int x = -rad; x <= rad; x++){
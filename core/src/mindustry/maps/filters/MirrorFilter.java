@@ -12,8 +12,6 @@ import mindustry.maps.filters.FilterOption.*;
 import mindustry.world.*;
 
 public class MirrorFilter extends GenerateFilter{
-    private static final Vec2 v1 = new Vec2(), v2 = new Vec2(), v3 = new Vec2();
-
     int angle = 45;
     boolean rotate = false;
 
@@ -30,8 +28,15 @@ public class MirrorFilter extends GenerateFilter{
         return Iconc.blockMetalFloor5;
     }
 
+    @Override
+    public boolean isSequential(){
+        return true;
+    }
+
     @Override
     public void apply(GenerateInput in){
+        Vec2 v1 = in.v1, v2 = in.v2, v3 = in.v3;
+
         v1.trnsExact(angle - 90, 1f);
         v2.set(v1).scl(-1f);
 
@@ -12,8 +12,6 @@ public class OreMedianFilter extends GenerateFilter{
     public float radius = 2;
     public float percentile = 0.5f;
 
-    private IntSeq blocks = new IntSeq();
-
     @Override
     public FilterOption[] options(){
         return new SliderOption[]{
@@ -46,6 +44,7 @@ public class OreMedianFilter extends GenerateFilter{
         }
 
         int rad = (int)radius;
+        IntSeq blocks = in.ints1;
 
         blocks.clear();
         for(int x = -rad; x <= rad; x++){
@@ -28,7 +28,7 @@ public class ScatterFilter extends GenerateFilter{
     @Override
     public void apply(GenerateInput in){
 
-        if(block != Blocks.air && (in.floor == flooronto || flooronto == Blocks.air) && in.block == Blocks.air && chance(in.x, in.y) <= chance){
+        if(block != Blocks.air && (in.floor == flooronto || flooronto == Blocks.air) && in.block == Blocks.air && chance(in, in.x, in.y) <= chance){
             if(!block.isOverlay()){
                 in.block = block;
             }else{
@@ -36,7 +36,7 @@ public class ScatterFilter extends GenerateFilter{
             }
         }
 
-        if(floor != Blocks.air && (in.floor == flooronto || flooronto == Blocks.air) && chance(in.x, in.y) <= chance){
+        if(floor != Blocks.air && (in.floor == flooronto || flooronto == Blocks.air) && chance(in, in.x, in.y) <= chance){
             in.floor = floor;
         }
     }
@@ -18,6 +18,7 @@ import java.io.*;
 import java.net.*;
 import java.nio.*;
 import java.nio.channels.*;
+import java.util.*;
 import java.util.concurrent.*;
 
 import static mindustry.Vars.*;
@@ -26,11 +27,16 @@ public class ArcNetProvider implements NetProvider{
     final Client client;
     final Prov<DatagramPacket> packetSupplier = () -> new DatagramPacket(new byte[512], 512);
     final AsyncExecutor executor = new AsyncExecutor(Math.max(Runtime.getRuntime().availableProcessors(), 6));
+    /** Serializes snapshot packets, LZ4-compresses them and sends them to clients, so that the main thread only has to hand off packets. Snapshot payloads themselves are never deflated. */
+    final ExecutorService sendExecutor = Threads.executor(Math.max(Runtime.getRuntime().availableProcessors() / 2, 1));
 
     final Server server;
     final CopyOnWriteArrayList<ArcConnection> connections = new CopyOnWriteArrayList<>();
     Thread serverThread;
 
+    /** Maximum amount of snapshots waiting to be sent to a connection; older ones are dropped when a client falls behind. */
+    private static final int maxQueuedPackets = 32;
+
     private static final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
     private static final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
 
@@ -280,6 +286,9 @@ public class ArcNetProvider implements NetProvider{
 
     class ArcConnection extends NetConnection{
         public final Connection connection;
+        /** Unreliable low-priority packets (snapshots) waiting to be sent by {@link #sendExecutor}, in order. */
+        private final ArrayDeque<Object> queued = new ArrayDeque<>();
+        private boolean draining;
 
         public ArcConnection(String address, Connection connection){
             super(address);
@@ -318,6 +327,41 @@ public class ArcNetProvider implements NetProvider{
 
         @Override
         public void send(Object object, boolean reliable){
+            //snapshots only contain primitives and byte arrays that are never modified after being handed off, so they can be written on another thread
+            if(!reliable && object instanceof Packet pack && pack.getPriority() == Packet.priorityLow){
+                synchronized(queued){
+                    if(queued.size() >= maxQueuedPackets){
+                        //snapshots are unreliable anyway; dropped entities are sent again once they are not acknowledged
+                        queued.removeFirst();
+                    }
+                    queued.addLast(object);
+                    if(draining) return;
+                    draining = true;
+                }
+                sendExecutor.submit(this::drain);
+                return;
+            }
+
+            sendNow(object, reliable);
+        }
+
+        /** Sends queued packets until there are none left. Only one drain runs per connection at a time, which keeps packets in order. */
+        private void drain(){
+            while(true){
+                Object next;
+                synchronized(queued){
+                    next = queued.pollFirst();
+                    if(next == null || !connection.isConnected()){
+                        queued.clear();
+                        draining = false;
+                        return;
+                    }
+                }
+                sendNow(next, false);
+            }
+        }
+
+        private void sendNow(Object object, boolean reliable){
             try{
                 if(reliable){
                     connection.sendTCP(object);
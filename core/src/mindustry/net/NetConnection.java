@@ -30,6 +30,13 @@ public abstract class NetConnection{
     public boolean hasConnected, hasBegunConnecting, hasDisconnected;
     public float viewWidth, viewHeight, viewX, viewY;
 
+    /** Amount of entity snapshots sent to this connection. */
+    public int syncCount;
+    /** The {@link #syncCount} at which each entity was last sent to this connection, by entity ID. Used for interest management. */
+    public IntIntMap syncedEntities = new IntIntMap();
+    /** Entity and building state this connection has acknowledged. */
+    public SnapshotBaseline baseline = new SnapshotBaseline();
+
     public NetConnection(String address){
         this.address = address;
     }
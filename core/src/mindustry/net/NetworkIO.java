@@ -23,33 +23,42 @@ public class NetworkIO{
     public static void writeWorld(Player player, OutputStream os){
 
         try(DataOutputStream stream = new DataOutputStream(os)){
-            //write all researched content to rules if hosting
-            if(state.isCampaign()){
-                state.rules.researched.clear();
-                for(ContentType type : ContentType.all){
-                    for(Content c : content.getBy(type)){
-                        if(c instanceof UnlockableContent u && u.unlocked() && TechTree.get(u) != null){
-                            state.rules.researched.add(u.name);
-                        }
+            writeWorldHeader(player, stream);
+            writeWorldMap(stream);
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Writes the part of the world data that is specific to the state of the game and the receiving player. */
+    public static void writeWorldHeader(Player player, DataOutputStream stream) throws IOException{
+        //write all researched content to rules if hosting
+        if(state.isCampaign()){
+            state.rules.researched.clear();
+            for(ContentType type : ContentType.all){
+                for(Content c : content.getBy(type)){
+                    if(c instanceof UnlockableContent u && u.unlocked() && TechTree.get(u) != null){
+                        state.rules.researched.add(u.name);
                     }
                 }
             }
+        }
 
-            stream.writeUTF(JsonIO.write(state.rules));
-            SaveIO.getSaveWriter().writeStringMap(stream, state.map.tags);
+        stream.writeUTF(JsonIO.write(state.rules));
+        SaveIO.getSaveWriter().writeStringMap(stream, state.map.tags);
 
-            stream.writeInt(state.wave);
-            stream.writeFloat(state.wavetime);
+        stream.writeInt(state.wave);
+        stream.writeFloat(state.wavetime);
 
-            stream.writeInt(player.id);
-            player.write(Writes.get(stream));
+        stream.writeInt(player.id);
+        player.write(Writes.get(stream));
+    }
 
-            SaveIO.getSaveWriter().writeContentHeader(stream);
-            SaveIO.getSaveWriter().writeMap(stream);
-            SaveIO.getSaveWriter().writeTeamBlocks(stream);
-        }catch(IOException e){
-            throw new RuntimeException(e);
-        }
+    /** Writes the part of the world data that is the same for every player: content, tiles and team block plans. */
+    public static void writeWorldMap(DataOutputStream stream) throws IOException{
+        SaveIO.getSaveWriter().writeContentHeader(stream);
+        SaveIO.getSaveWriter().writeMap(stream);
+        SaveIO.getSaveWriter().writeTeamBlocks(stream);
     }
 
     public static void loadWorld(InputStream is){
@@ -79,12 +88,17 @@ public class NetworkIO{
         }
     }
 
+    /** Server data is written into this buffer on every ping; it is only used by the discovery handler. */
+    private static final ByteBuffer serverData = ByteBuffer.allocateDirect(500);
+
+    /** @return the server data for a discovery response. The buffer is reused by the next call. */
     public static ByteBuffer writeServerData(){
         String name = (headless ? Config.name.string() : player.name);
         String description = headless && !Config.desc.string().equals("off") ? Config.desc.string() : "";
         String map = state.map.name();
 
-        ByteBuffer buffer = ByteBuffer.allocate(500);
+        ByteBuffer buffer = serverData;
+        buffer.clear();
 
         writeString(buffer, name, 100);
         writeString(buffer, map, 64);
@@ -0,0 +1,81 @@
+package mindustry.net;
+
+import arc.struct.*;
+
+/**
+ * Tracks the entity and building state that a client has acknowledged, so that unchanged payloads can be left out of snapshots.
+ * Every snapshot packet sent to a connection gets an ID; the keys and payload hashes it contained are kept until the client
+ * acknowledges it, at which point they become the baseline. Packets that are lost are never acknowledged, so their contents are sent again.
+ */
+public class SnapshotBaseline{
+    /** Amount of packets that are kept around waiting for an acknowledgement. */
+    public static final int maxPending = 128;
+    /** Amount of packets after which a key is sent again, even if unchanged. Bounds the effect of hash collisions and lost acknowledgements. */
+    private static final int resyncInterval = 600;
+
+    private int nextID;
+    /** hash of the last acknowledged payload of each key, and the ID of the packet it was acknowledged in. */
+    private final IntIntMap hashes = new IntIntMap(), ids = new IntIntMap();
+    /** keys and hashes of every unacknowledged packet, stored as pairs. */
+    private final IntMap<IntSeq> pending = new IntMap<>();
+    private IntSeq current = new IntSeq();
+
+    /** @return whether the payload with this hash differs from what the client has acknowledged for this key. */
+    public boolean changed(int key, int hash){
+        int id = ids.get(key, -1);
+        return id == -1 || hashes.get(key, 0) != hash || nextID - id > resyncInterval;
+    }
+
+    /** Records a payload as part of the packet that is being assembled. */
+    public void add(int key, int hash){
+        current.add(key, hash);
+    }
+
+    /** Finishes the packet that is being assembled. @return its ID, to be sent along with it. */
+    public int finish(){
+        int id = nextID++;
+        pending.put(id, current);
+        pending.remove(id - maxPending);
+        current = new IntSeq();
+        return id;
+    }
+
+    /** Called when the client has received a packet. */
+    public void acknowledge(int id){
+        IntSeq entries = pending.remove(id);
+        if(entries == null) return;
+
+        for(int i = 0; i < entries.size; i += 2){
+            int key = entries.items[i];
+            //acknowledgements may arrive out of order; the client only ever applies newer packets
+            if(ids.get(key, -1) < id){
+                ids.put(key, id);
+                hashes.put(key, entries.items[i + 1]);
+            }
+        }
+    }
+
+    /** @return the amount of keys in the baseline. */
+    public int size(){
+        return hashes.size;
+    }
+
+    /** Forgets the baseline, so that everything is sent again. Packet IDs keep counting up. */
+    public void clear(){
+        hashes.clear();
+        ids.clear();
+        pending.clear();
+        current.clear();
+    }
+
+    /** @return a hash of the specified range of bytes. */
+    public static int hash(byte[] bytes, int offset, int length){
+        //FNV-1a
+        int hash = 0x811c9dc5;
+        for(int i = offset; i < offset + length; i++){
+            hash ^= bytes[i] & 0xff;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+}
@@ -1,5 +1,6 @@
 package mindustry.net;
 
+import arc.util.io.*;
 import mindustry.net.Packets.*;
 
 import java.io.*;
@@ -16,12 +17,14 @@ public class Streamable extends Packet{
         public final int id;
         public final byte type;
         public final int total;
-        public final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        public final ReusableByteOutStream stream;
 
         public StreamBuilder(StreamBegin begin){
             id = begin.id;
             type = begin.type;
             total = begin.total;
+            //size the buffer up front, but don't trust huge totals
+            stream = new ReusableByteOutStream(Math.max(Math.min(total, 1 << 24), 32));
         }
 
         public float progress(){
@@ -38,7 +41,8 @@ public class Streamable extends Packet{
 
         public Streamable build(){
             Streamable s = Net.newPacket(type);
-            s.stream = new ByteArrayInputStream(stream.toByteArray());
+            //the builder is discarded once built, so the stream can read its buffer directly
+            s.stream = new ByteArrayInputStream(stream.getBytes(), 0, stream.size());
             return s;
         }
 
@@ -0,0 +1,126 @@
+package mindustry.net;
+
+import arc.*;
+import arc.util.*;
+import arc.util.async.*;
+import arc.util.io.*;
+import mindustry.game.EventType.*;
+import mindustry.gen.*;
+import mindustry.io.*;
+import mindustry.net.Packets.*;
+
+import java.io.*;
+import java.util.zip.*;
+
+/**
+ * Builds the world data that is sent to joining players.
+ * The map part, which is nearly all of it, is serialized once and shared by every player that joins within the same frame,
+ * as happens when a server changes maps; only the rules and player data are written per player.
+ * It is not reused across frames, as building state and configuration changes are not resent to players that join later. The map is compressed once into raw deflate data,
+ * which the compressed player data is prepended to, so that compression and assembly can happen on a background thread.
+ */
+public class WorldStreamCache{
+    private final AsyncExecutor executor = new AsyncExecutor(1);
+    private @Nullable MapData cached;
+    private long cachedFrame;
+
+    public WorldStreamCache(){
+        Events.on(WorldLoadEvent.class, e -> cached = null);
+        Events.on(TileChangeEvent.class, e -> cached = null);
+    }
+
+    /** Sends the world to a player once it has been compressed. Must be called on the main thread. */
+    public void send(Player player){
+        NetConnection con = player.con;
+        ReusableByteOutStream header;
+        MapData map;
+
+        try{
+            header = header(player);
+            map = map();
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+
+        executor.submit(() -> {
+            try{
+                ReusableByteOutStream out = assemble(header, map);
+
+                WorldStream data = new WorldStream();
+                data.stream = new ByteArrayInputStream(out.getBytes(), 0, out.size());
+
+                Core.app.post(() -> {
+                    if(con.isConnected()){
+                        con.sendStream(data);
+                        Log.debug("Packed @ bytes of world data.", out.size());
+                    }
+                });
+            }catch(Throwable e){
+                Log.err(e);
+                Core.app.post(() -> con.kick("Failed to send world data."));
+            }
+        });
+    }
+
+    /** @return the compressed world data for a player, as sent by {@link #send(Player)}, assembled on the calling thread. Must be called on the main thread. */
+    public ReusableByteOutStream write(Player player) throws IOException{
+        ReusableByteOutStream header = header(player);
+        return assemble(header, map());
+    }
+
+    private ReusableByteOutStream header(Player player) throws IOException{
+        ReusableByteOutStream header = new ReusableByteOutStream();
+        NetworkIO.writeWorldHeader(player, new DataOutputStream(header));
+        return header;
+    }
+
+    /** @return a zlib stream of the player data followed by the map, without compressing the map again. */
+    private static ReusableByteOutStream assemble(ReusableByteOutStream header, MapData map) throws IOException{
+        byte[] compressed = map.compressed();
+        byte[] prefix = ParallelDeflate.deflateRaw(header.getBytes(), 0, header.size(), false, Deflater.BEST_SPEED);
+        Adler32 adler = new Adler32();
+        adler.update(header.getBytes(), 0, header.size());
+
+        ReusableByteOutStream out = new ReusableByteOutStream(prefix.length + compressed.length + 6);
+        ParallelDeflate.writeHeader(out, Deflater.BEST_SPEED);
+        out.write(prefix, 0, prefix.length);
+        out.write(compressed, 0, compressed.length);
+        ParallelDeflate.writeTrailer(out, ParallelDeflate.combineAdler((int)adler.getValue(), map.adler, map.length));
+        return out;
+    }
+
+    /** @return the serialized map, written again if it is out of date. */
+    private MapData map() throws IOException{
+        long frame = Core.graphics.getFrameId();
+        if(cached == null || frame != cachedFrame){
+            ReusableByteOutStream bytes = new ReusableByteOutStream();
+            NetworkIO.writeWorldMap(new DataOutputStream(bytes));
+            cached = new MapData(bytes);
+            cachedFrame = frame;
+        }
+        return cached;
+    }
+
+    /** Serialized map data, compressed by whichever player needs it first. */
+    private static class MapData{
+        final ReusableByteOutStream bytes;
+        final int length;
+        int adler;
+        @Nullable byte[] compressed;
+
+        MapData(ReusableByteOutStream bytes){
+            this.bytes = bytes;
+            this.length = bytes.size();
+        }
+
+        synchronized byte[] compressed(){
+            if(compressed == null){
+                Adler32 check = new Adler32();
+                check.update(bytes.getBytes(), 0, length);
+                adler = (int)check.getValue();
+                compressed = ParallelDeflate.deflateRaw(bytes.getBytes(), 0, length, true, Deflater.BEST_SPEED);
+            }
+            return compressed;
+        }
+    }
+}
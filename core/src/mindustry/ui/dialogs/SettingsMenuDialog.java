@@ -289,6 +289,7 @@ public class SettingsMenuDialog extends Dialog{
         sound.sliderPref("ambientvol", 100, 0, 100, 1, i -> i + "%");
 
         game.sliderPref("saveinterval", 60, 10, 5 * 120, 10, i -> Core.bundle.format("setting.seconds", i));
+        game.sliderPref("editorundomemory", 64, 16, 512, 16, i -> Core.bundle.format("setting.megabytes", i));
 
         if(mobile){
             game.checkPref("autotarget", true);
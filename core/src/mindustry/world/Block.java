@@ -74,6 +74,8 @@ public class Block extends UnlockableContent{
     public boolean copyConfig = true;
     /** whether this block has a tile entity that updates */
     public boolean update;
+    /** whether Building#updateParallel() only changes the state of its own building, and can be called on a worker thread; see BuildingUpdater. Only set this on blocks whose exact building class is known to follow that rule. */
+    public boolean parallelUpdate = false;
     /** whether this block has health and can be destroyed */
     public boolean destructible;
     /** whether unloaders work on this block */
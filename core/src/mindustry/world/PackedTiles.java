@@ -0,0 +1,275 @@
+package mindustry.world;
+
+import arc.func.*;
+import arc.math.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.content.*;
+import mindustry.game.*;
+import mindustry.gen.*;
+import mindustry.world.blocks.environment.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * A columnar tile store. Floor, overlay and block IDs are kept as shorts and team, rotation and data as bytes,
+ * instead of one {@link Tile} object per cell. Tile objects are only kept for cells that hold a building.
+ * Use {@link #context()} to read a map into this store without materializing every tile.
+ * <p>
+ * This is a side store for bulk passes over map data, like the generation filters and region reads.
+ * It does not back {@link Tiles}: the world, and the editor with it, still keeps a tile object per cell,
+ * as playtesting runs the game directly on the editor's tiles, and buildings, proximity and rendering rely on their identity.
+ */
+public class PackedTiles{
+    public final int width, height;
+    public final short[] floors, overlays, blocks;
+    public final byte[] teams, rotations, data;
+
+    /** tiles holding a building, keyed by the index of their center. */
+    final IntMap<Tile> buildings = new IntMap<>();
+
+    public PackedTiles(int width, int height){
+        this.width = width;
+        this.height = height;
+
+        int size = width * height;
+        floors = new short[size];
+        overlays = new short[size];
+        blocks = new short[size];
+        teams = new byte[size];
+        rotations = new byte[size];
+        data = new byte[size];
+    }
+
+    /** @return a packed copy of the specified tiles. Buildings are shared, not copied. */
+    public static PackedTiles of(Tiles tiles){
+        PackedTiles out = new PackedTiles(tiles.width, tiles.height);
+        for(int i = 0; i < tiles.width * tiles.height; i++){
+            out.set(i, tiles.geti(i));
+        }
+        return out;
+    }
+
+    /** @return whether these coordinates are in bounds */
+    public boolean in(int x, int y){
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /** @return the iteration index of these coordinates; does not range-check. */
+    public int index(int x, int y){
+        return y * width + x;
+    }
+
+    public Floor floor(int index){
+        return (Floor)content.block(floors[index]);
+    }
+
+    public Floor overlay(int index){
+        return (Floor)content.block(overlays[index]);
+    }
+
+    public Block block(int index){
+        return content.block(blocks[index]);
+    }
+
+    public Team team(int index){
+        return Team.get(teams[index]);
+    }
+
+    public int rotation(int index){
+        return rotations[index];
+    }
+
+    /** @return the tile holding the building centered at this index, or null if there is none. */
+    public @Nullable Tile building(int index){
+        return buildings.get(index);
+    }
+
+    /** @return the amount of cells that hold a building center. */
+    public int buildingCount(){
+        return buildings.size;
+    }
+
+    /** Loads the terrain of a cell into a reusable tile without triggering any change logic. Buildings are not loaded. */
+    public Tile read(int index, Tile out){
+        out.x = (short)(index % width);
+        out.y = (short)(index / width);
+        out.floor = floor(index);
+        out.overlay = overlay(index);
+        out.block = block(index);
+        out.data = data[index];
+        out.build = null;
+        return out;
+    }
+
+    /** Copies the state of a tile into this store. */
+    public void set(int index, Tile tile){
+        floors[index] = tile.floorID();
+        overlays[index] = tile.overlayID();
+        blocks[index] = tile.blockID();
+        teams[index] = (byte)tile.getTeamID();
+        rotations[index] = tile.build == null ? 0 : (byte)tile.build.rotation;
+        data[index] = tile.data;
+
+        if(tile.build != null && tile.isCenter()){
+            buildings.put(index, tile);
+        }else{
+            buildings.remove(index);
+        }
+    }
+
+    /** Sets the terrain of a cell. Does not affect buildings. */
+    public void set(int index, Block block, Block floor, Block overlay){
+        blocks[index] = block.id;
+        floors[index] = floor.id;
+        overlays[index] = overlay.id;
+    }
+
+    /** Copies the terrain and buildings of another store of the same size into this one. */
+    public void set(PackedTiles other){
+        if(other.width != width || other.height != height) throw new IllegalArgumentException("Size mismatch: " + other.width + "x" + other.height + " != " + width + "x" + height);
+
+        System.arraycopy(other.floors, 0, floors, 0, floors.length);
+        System.arraycopy(other.overlays, 0, overlays, 0, overlays.length);
+        System.arraycopy(other.blocks, 0, blocks, 0, blocks.length);
+        System.arraycopy(other.teams, 0, teams, 0, teams.length);
+        System.arraycopy(other.rotations, 0, rotations, 0, rotations.length);
+        System.arraycopy(other.data, 0, data, 0, data.length);
+        buildings.clear();
+        buildings.putAll(other.buildings);
+    }
+
+    /** @return a world context that reads a map into this store. The map must have the same size as this store. */
+    public WorldContext context(){
+        return new PackedContext();
+    }
+
+    /**
+     * A tile that never touches the loaded world. Multiblocks are not linked to their cells through {@link Tile#setBlock(Block, Team, int, Prov)},
+     * as that goes through the global world; the store marks their cells in {@link PackedContext#onReadBuilding()} instead.
+     */
+    static class PackedTile extends CachedTile{
+
+        @Override
+        public void setBlock(Block type, Team team, int rotation, Prov<Building> entityprov){
+            this.block = type;
+            changeBuild(team, entityprov, Mathf.mod(rotation, 4));
+
+            if(build != null){
+                build.team(team);
+            }
+        }
+
+        @Override
+        public void recache(){
+        }
+
+        @Override
+        public void recacheWall(){
+        }
+
+        @Override
+        protected void changed(){
+        }
+    }
+
+    /** Reads tiles through a single reused tile, writing its state back into the columns. */
+    class PackedContext implements WorldContext{
+        final PackedTile tile = new PackedTile();
+        int current = -1;
+
+        @Override
+        public Tile tile(int index){
+            load(index);
+            return tile;
+        }
+
+        @Override
+        public void resize(int width, int height){
+            if(width != PackedTiles.this.width || height != PackedTiles.this.height){
+                throw new IllegalArgumentException("Map size " + width + "x" + height + " does not match store size " + PackedTiles.this.width + "x" + PackedTiles.this.height);
+            }
+        }
+
+        @Override
+        public Tile create(int x, int y, int floorID, int overlayID, int wallID){
+            int index = index(x, y);
+            floors[index] = (short)floorID;
+            overlays[index] = (short)overlayID;
+            blocks[index] = (short)wallID;
+            return tile(index);
+        }
+
+        @Override
+        public boolean isGenerating(){
+            return false;
+        }
+
+        @Override
+        public void begin(){
+        }
+
+        @Override
+        public void end(){
+            flush();
+            current = -1;
+        }
+
+        @Override
+        public void onReadBuilding(){
+            if(tile.build == null) return;
+
+            flush();
+
+            //give the building a tile of its own, since the cached tile is reused for every cell
+            Tile owner = new PackedTile();
+            owner.x = tile.x;
+            owner.y = tile.y;
+            owner.floor = tile.floor;
+            owner.overlay = tile.overlay;
+            owner.block = tile.block;
+            owner.data = tile.data;
+            owner.build = tile.build;
+            owner.build.tile(owner);
+            tile.build = null;
+
+            buildings.put(current, owner);
+
+            //multiblocks cover their linked cells as well
+            Block block = owner.block;
+            int offset = -(block.size - 1) / 2;
+            for(int dx = 0; dx < block.size; dx++){
+                for(int dy = 0; dy < block.size; dy++){
+                    int wx = owner.x + dx + offset, wy = owner.y + dy + offset;
+                    if(in(wx, wy)){
+                        int index = index(wx, wy);
+                        blocks[index] = block.id;
+                        teams[index] = (byte)owner.build.team.id;
+                        rotations[index] = (byte)owner.build.rotation;
+                    }
+                }
+            }
+        }
+
+        void load(int index){
+            if(current == index) return;
+
+            flush();
+            current = index;
+            read(index, tile);
+        }
+
+        void flush(){
+            if(current == -1) return;
+
+            floors[current] = tile.floorID();
+            overlays[current] = tile.overlayID();
+            blocks[current] = tile.block == null ? Blocks.air.id : tile.blockID();
+            data[current] = tile.data;
+            if(tile.build != null){
+                teams[current] = (byte)tile.build.team.id;
+                rotations[current] = (byte)tile.build.rotation;
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package mindustry.world;
+
+import arc.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.game.EventType.*;
+import mindustry.gen.*;
+
+/**
+ * Wakes up buildings that went to sleep for a fixed amount of time; see {@link Building#sleepFor(float)}.
+ * Sleeping buildings are not in any entity group, so they cost nothing per frame. Anything that changes them, like items or
+ * liquids arriving, a configuration or a proximity or power graph change, wakes them up early with {@link Building#noSleep()}.
+ * Wake-up times are kept in a timer wheel with one slot per tick; times further away than a full turn go around again.
+ */
+@SuppressWarnings("unchecked")
+public class SleepScheduler{
+    /** Amount of slots in the wheel. Must be a power of two. */
+    private static final int slots = 256;
+    private static final int mask = slots - 1;
+
+    private final Seq<Building>[] wheel = new Seq[slots];
+    /** whole ticks passed since the world was loaded, the part of a tick passed since then, and the last tick whose slot was processed */
+    private int ticks;
+    private float remainder;
+    private int tick;
+
+    public SleepScheduler(){
+        for(int i = 0; i < slots; i++){
+            wheel[i] = new Seq<>(false, 16, Building.class);
+        }
+
+        Events.on(WorldLoadEvent.class, e -> clear());
+        Events.on(ResetEvent.class, e -> clear());
+    }
+
+    /** @return the tick at which a building that sleeps for this many ticks from now is woken up. */
+    public int wakeTick(float ticks){
+        return this.ticks + (int)(remainder + Math.max(ticks, 1f));
+    }
+
+    /** Adds a sleeping building to the wheel. Its {@link Building#wakeTick} must be set. */
+    public void schedule(Building build){
+        wheel[build.wakeTick & mask].add(build);
+    }
+
+    /** Wakes up every building whose time has come. Main thread only. */
+    public void update(){
+        //kept apart from the fraction, so the count does not stop increasing on long sessions like a float would
+        remainder += Time.delta;
+        int passed = (int)remainder;
+        ticks += passed;
+        remainder -= passed;
+
+        while(tick < ticks){
+            tick++;
+            Seq<Building> slot = wheel[tick & mask];
+            Building[] items = slot.items;
+
+            for(int i = 0; i < slot.size; i++){
+                Building build = items[i];
+
+                //asleep until a later turn of the wheel
+                if(build.sleeping && build.wakeTick > tick && build.isValid()) continue;
+
+                slot.remove(i--);
+
+                //buildings that were woken up early or removed from their tile may still be in here
+                if(build.sleeping && build.wakeTick == tick && build.isValid()){
+                    build.noSleep();
+                }
+            }
+        }
+    }
+
+    public void clear(){
+        for(Seq<Building> slot : wheel){
+            slot.clear();
+        }
+        ticks = 0;
+        remainder = 0f;
+        tick = 0;
+    }
+}
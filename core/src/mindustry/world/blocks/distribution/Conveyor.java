@@ -136,6 +136,9 @@ public class Conveyor extends Block implements Autotiler{
 
         public float clogHeat = 0f;
 
+        /** end of the line this conveyor is in, and the conveyor that feeds straight into this one within it; null if not computed yet. see {@link #head()} */
+        @Nullable ConveyorBuild lineHead, linePrev;
+
         @Override
         public void draw(){
             int frame = enabled && clogHeat <= 0.5f ? (int)(((Time.time * speed * 8f * timeScale)) % 4) : 0;
@@ -208,6 +211,57 @@ public class Conveyor extends Block implements Autotiler{
             next = front();
             nextc = next instanceof ConveyorBuild && next.team == team ? (ConveyorBuild)next : null;
             aligned = nextc != null && rotation == next.rotation;
+            clearLine();
+        }
+
+        /**
+         * Forgets the cached line this conveyor was in, for all of its conveyors.
+         * Any change to a line goes through the proximity update of one of its conveyors, so this is enough to keep lines valid.
+         */
+        void clearLine(){
+            ConveyorBuild current = lineHead;
+            while(current != null){
+                ConveyorBuild prev = current.linePrev;
+                current.lineHead = null;
+                current.linePrev = null;
+                current = prev;
+            }
+            lineHead = null;
+            linePrev = null;
+        }
+
+        /** @return whether this conveyor passes items straight into another one of the same type, as part of a line. */
+        public boolean inLine(){
+            return aligned && nextc.block == block;
+        }
+
+        /**
+         * @return the last conveyor of the line this one is in, which moves the items of the whole line at once.
+         * Lines are computed once from their end for all of their conveyors, and cached until one of them changes.
+         */
+        public ConveyorBuild head(){
+            if(lineHead == null){
+                //in a closed loop, this conveyor is the end
+                ConveyorBuild head = this;
+                while(head.inLine() && head.nextc != this){
+                    head = head.nextc;
+                }
+
+                ConveyorBuild current = head;
+                while(current != null){
+                    ConveyorBuild prev = current.back() instanceof ConveyorBuild c && c.nextc == current && c.inLine() && c != head ? c : null;
+                    current.lineHead = head;
+                    current.linePrev = prev;
+                    current = prev;
+                }
+            }
+            return lineHead;
+        }
+
+        /** @return the conveyor of the same line that feeds straight into this one, if any. */
+        public @Nullable ConveyorBuild previous(){
+            head();
+            return linePrev;
         }
 
         @Override
@@ -239,16 +293,45 @@ public class Conveyor extends Block implements Autotiler{
 
         @Override
         public void updateTile(){
+            ConveyorBuild head = head();
+
+            //moved along by the end of the line; make sure it is awake
+            if(head != this){
+                if(len == 0){
+                    clogHeat = 0f;
+                    sleep();
+                }else{
+                    head.noSleep();
+                    noSleep();
+                }
+                return;
+            }
+
+            //move the whole line, starting at the end, so every conveyor sees where the items in front of it are this frame
+            boolean moving = false;
+            for(ConveyorBuild current = this; current != null; current = current.previous()){
+                moving |= current.moveItems();
+            }
+
+            if(moving){
+                noSleep();
+            }else{
+                sleep();
+            }
+        }
+
+        /** Moves the items on this conveyor. @return whether it has any items. */
+        boolean moveItems(){
             minitem = 1f;
             mid = 0;
 
             //skip updates if possible
             if(len == 0){
                 clogHeat = 0f;
-                sleep();
-                return;
+                return false;
             }
 
+            boolean line = inLine();
             float nextMax = aligned ? 1f - Math.max(itemSpace - nextc.minitem, 0) : 1f;
             float moved = speed * edelta();
 
@@ -262,9 +345,9 @@ public class Conveyor extends Block implements Autotiler{
                 if(ys[i] > 0.5 && i > 0) mid = i - 1;
                 xs[i] = Mathf.approach(xs[i], 0, moved*2);
 
-                if(ys[i] >= 1f && pass(ids[i])){
+                if(ys[i] >= 1f && (line ? passLine(ids[i], xs[i]) : pass(ids[i]))){
                     //align X position if passing forwards
-                    if(aligned){
+                    if(aligned && !line){
                         nextc.xs[nextc.lastInserted] = xs[i];
                     }
                     //remove last item
@@ -281,7 +364,21 @@ public class Conveyor extends Block implements Autotiler{
                 clogHeat = 0f;
             }
 
-            noSleep();
+            return len > 0;
+        }
+
+        /** Passes an item straight into the next conveyor of the line, with the checks of acceptItem() and handleItem() for items from behind. */
+        boolean passLine(Item item, float x){
+            ConveyorBuild other = nextc;
+            if(item == null || other.len >= capacity || other.minitem < itemSpace) return false;
+
+            other.noSleep();
+            other.items.add(item, 1);
+            other.add(0);
+            other.xs[0] = x;
+            other.ys[0] = 0;
+            other.ids[0] = item;
+            return true;
         }
 
         public boolean pass(Item item){
@@ -398,7 +495,7 @@ public class Conveyor extends Block implements Autotiler{
             }
 
             //this updates some state
-            updateTile();
+            moveItems();
         }
 
 
@@ -12,6 +12,11 @@ public class PowerGraph{
     private static final Seq<Building> outArray1 = new Seq<>();
     private static final Seq<Building> outArray2 = new Seq<>();
     private static final IntSet closedSet = new IntSet();
+    /** state of {@link #split(Seq, Building)}: which search reached each building, by position, and the searches themselves */
+    private static final IntIntMap searchLabels = new IntIntMap();
+    private static final Seq<Queue<Building>> searchQueues = new Seq<>();
+    private static final Seq<Seq<Building>> searchFound = new Seq<>();
+    private static int[] searchParents = new int[8];
 
     private final Seq<Building> producers = new Seq<>(false);
     private final Seq<Building> consumers = new Seq<>(false);
@@ -226,8 +231,19 @@ public class PowerGraph{
 
         lastScaledPowerIn = (powerProduced + energyDelta) / Time.delta;
         lastScaledPowerOut = powerNeeded / Time.delta;
-        lastCapacity = getTotalBatteryCapacity();
-        lastPowerStored = getBatteryStored();
+
+        //total capacity and stored power in one pass over the batteries
+        float capacity = 0f, stored = 0f;
+        for(Building battery : batteries){
+            Consumers consumes = battery.block.consumes;
+            if(battery.enabled && consumes.hasPower()){
+                float batteryCapacity = consumes.getPower().capacity;
+                capacity += batteryCapacity;
+                stored += battery.power.status * batteryCapacity;
+            }
+        }
+        lastCapacity = capacity;
+        lastPowerStored = stored;
 
         powerBalance.add((lastPowerProduced - lastPowerNeeded + energyDelta) / Time.delta);
         energyDelta = 0f;
@@ -250,9 +266,15 @@ public class PowerGraph{
         }
     }
 
+    /** Merges two graphs. The smaller one is merged into the larger one, so only its buildings have to be moved. */
     public void addGraph(PowerGraph graph){
         if(graph == this) return;
 
+        if(graph.all.size > all.size){
+            graph.addGraph(this);
+            return;
+        }
+
         for(Building tile : graph.all){
             add(tile);
         }
@@ -265,6 +287,8 @@ public class PowerGraph{
             build.power.graph = this;
             build.power.init = true;
             all.add(build);
+            //power may be available now
+            build.noSleep();
 
             if(build.block.outputsPower && build.block.consumesPower && !build.block.consumes.getPower().buffered){
                 producers.add(build);
@@ -302,39 +326,153 @@ public class PowerGraph{
         batteries.remove(build);
     }
 
-    /** Note that this does not actually remove the building from the graph;
-     * it creates *new* graphs that contain the correct buildings. */
+    /** Removes a building from this graph. Any parts of the graph that it was the only connection between are split off into new graphs. */
     public void remove(Building tile){
-
-        //go through all the connections of this tile
+        Seq<Building> roots = new Seq<>();
         for(Building other : tile.getPowerConnections(outArray1)){
-            //a graph has already been assigned to this tile from a previous call, skip it
-            if(other.power.graph != this) continue;
+            if(other.power.graph == this && !roots.contains(other, true)){
+                roots.add(other);
+            }
+        }
+
+        split(roots, tile);
+    }
+
+    /**
+     * Splits off the parts of this graph that are no longer connected to each other, after a building or link was removed.
+     * Searches from every root at once, one building at a time each; searches that meet are merged, as they are in the same part.
+     * Once all but one of them have run out, each finished search found a part that is moved into a new graph, while everything else stays.
+     * The cost thus depends on the size of the parts that are split off, instead of the size of the whole graph.
+     * @param roots buildings on each side of the removed connection.
+     * @param removed a building that is being removed, which is not searched through and leaves the graph; may be null.
+     */
+    public void split(Seq<Building> roots, @Nullable Building removed){
+        int count = roots.size;
+        searchLabels.clear();
+        if(searchParents.length < count) searchParents = new int[count * 2];
+        while(searchQueues.size < count){
+            searchQueues.add(new Queue<>());
+            searchFound.add(new Seq<>(false, 16, Building.class));
+        }
+
+        if(removed != null) searchLabels.put(removed.pos(), -1);
+
+        for(int i = 0; i < count; i++){
+            Building root = roots.get(i);
+            searchParents[i] = i;
+            searchQueues.get(i).clear();
+            searchFound.get(i).clear();
+
+            int label = searchLabels.get(root.pos(), -2);
+            if(label == -2){
+                searchLabels.put(root.pos(), i);
+                searchQueues.get(i).addLast(root);
+                searchFound.get(i).add(root);
+            }else if(label >= 0){
+                union(label, i);
+            }
+        }
+
+        //advance every search by one building in turn, until at most one set of searches that met is left running
+        while(running(count) > 1){
+            for(int i = 0; i < count; i++){
+                Queue<Building> queue = searchQueues.get(i);
+                if(queue.size == 0) continue;
 
-            //create graph for this branch
-            PowerGraph graph = new PowerGraph();
-            graph.add(other);
-            //add to queue for BFS
-            queue.clear();
-            queue.addLast(other);
-            while(queue.size > 0){
-                //get child from queue
                 Building child = queue.removeFirst();
-                //add it to the new branch graph
-                graph.add(child);
-                //go through connections
                 for(Building next : child.getPowerConnections(outArray2)){
-                    //make sure it hasn't looped back, and that the new graph being assigned hasn't already been assigned
-                    //also skip closed tiles
-                    if(next != tile && next.power.graph != graph){
-                        graph.add(next);
+                    if(next.power.graph != this) continue;
+
+                    int label = searchLabels.get(next.pos(), -2);
+                    if(label == -2){
+                        searchLabels.put(next.pos(), i);
                         queue.addLast(next);
+                        searchFound.get(i).add(next);
+                    }else if(label >= 0){
+                        union(label, i);
                     }
                 }
             }
+        }
+
+        //the searches that are still running, or else the ones that found the most, keep this graph
+        int keep = -1, most = -1;
+        for(int group = 0; group < count; group++){
+            if(find(group) != group) continue;
+
+            int found = 0;
+            for(int i = 0; i < count; i++){
+                if(find(i) != group) continue;
+                if(searchQueues.get(i).size > 0) found = Integer.MAX_VALUE;
+                if(found != Integer.MAX_VALUE) found += searchFound.get(i).size;
+            }
+
+            if(found > most){
+                most = found;
+                keep = group;
+            }
+        }
+
+        boolean moved = false;
+        for(int group = 0; group < count; group++){
+            if(find(group) != group || group == keep) continue;
+
+            PowerGraph graph = new PowerGraph();
+            for(int i = 0; i < count; i++){
+                if(find(i) != group) continue;
+                for(Building build : searchFound.get(i)){
+                    graph.add(build);
+                }
+            }
             //update the graph once so direct consumers without any connected producer lose their power
             graph.update();
+            moved = true;
+        }
+
+        if(moved || removed != null){
+            all.removeAll(b -> b == removed || b.power.graph != this);
+            producers.removeAll(b -> b == removed || b.power.graph != this);
+            consumers.removeAll(b -> b == removed || b.power.graph != this);
+            batteries.removeAll(b -> b == removed || b.power.graph != this);
         }
+
+        //the removed building no longer belongs to any graph that is in use
+        if(removed != null) removed.power.graph = new PowerGraph();
+
+        for(int i = 0; i < count; i++){
+            searchQueues.get(i).clear();
+            searchFound.get(i).clear();
+        }
+    }
+
+    /** @return the amount of sets of merged searches that still have buildings left to search. */
+    private static int running(int count){
+        int running = 0;
+        for(int i = 0; i < count; i++){
+            if(find(i) != i) continue;
+
+            for(int j = 0; j < count; j++){
+                if(searchQueues.get(j).size > 0 && find(j) == i){
+                    running++;
+                    break;
+                }
+            }
+        }
+        return running;
+    }
+
+    private static int find(int search){
+        while(searchParents[search] != search){
+            searchParents[search] = searchParents[searchParents[search]];
+            search = searchParents[search];
+        }
+        return search;
+    }
+
+    private static void union(int a, int b){
+        a = find(a);
+        b = find(b);
+        if(a != b) searchParents[Math.max(a, b)] = Math.min(a, b);
     }
 
     private boolean otherConsumersAreValid(Building tile, Consume consumePower){
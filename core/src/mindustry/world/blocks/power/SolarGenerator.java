@@ -23,7 +23,7 @@ public class SolarGenerator extends PowerGenerator{
 
     public class SolarGeneratorBuild extends GeneratorBuild{
         @Override
-        public void updateTile(){
+        public void updateParallel(){
             productionEfficiency = enabled ?
                 Mathf.maxZero(Attribute.light.env() +
                     (state.rules.lighting ?
@@ -31,5 +31,10 @@ public class SolarGenerator extends PowerGenerator{
                         1f
                     )) : 0f;
         }
+
+        @Override
+        public void updateTile(){
+            if(!block.parallelUpdate) updateParallel();
+        }
     }
 }
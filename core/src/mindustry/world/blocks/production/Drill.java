@@ -245,15 +245,11 @@ public class Drill extends Block{
         }
 
         @Override
-        public void updateTile(){
+        public void updateParallel(){
             if(dominantItem == null){
                 return;
             }
 
-            if(timer(timerDump, dumpTime)){
-                dump(items.has(dominantItem) ? dominantItem : null);
-            }
-
             timeDrilled += warmup * delta();
 
             if(items.total() < itemCapacity && dominantItems > 0 && consValid()){
@@ -269,15 +265,35 @@ public class Drill extends Block{
                 lastDrillSpeed = (speed * dominantItems * warmup) / (drillTime + hardnessDrillMultiplier * dominantItem.hardness);
                 warmup = Mathf.lerpDelta(warmup, speed, warmupSpeed);
                 progress += delta() * dominantItems * speed * warmup;
-
-                if(Mathf.chanceDelta(updateEffectChance * warmup))
-                    updateEffect.at(x + Mathf.range(size * 2f), y + Mathf.range(size * 2f));
             }else{
                 lastDrillSpeed = 0f;
                 warmup = Mathf.lerpDelta(warmup, 0f, warmupSpeed);
+            }
+        }
+
+        @Override
+        public void updateTile(){
+            if(!block.parallelUpdate) updateParallel();
+
+            if(dominantItem == null){
                 return;
             }
 
+            if(timer(timerDump, dumpTime)){
+                dump(items.has(dominantItem) ? dominantItem : null);
+            }
+
+            //full and spun down; nothing to do until the next dump
+            if(items.total() >= itemCapacity && warmup < 0.01f){
+                sleepFor(dumpTime);
+                return;
+            }
+
+            if(items.total() >= itemCapacity || dominantItems <= 0 || !consValid()) return;
+
+            if(Mathf.chanceDelta(updateEffectChance * warmup))
+                updateEffect.at(x + Mathf.range(size * 2f), y + Mathf.range(size * 2f));
+
             float delay = drillTime + hardnessDrillMultiplier * dominantItem.hardness;
 
             if(dominantItems > 0 && progress >= delay && items.total() < itemCapacity){
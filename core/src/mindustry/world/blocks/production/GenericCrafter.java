@@ -112,19 +112,23 @@ public class GenericCrafter extends Block{
         }
 
         @Override
-        public void updateTile(){
+        public void updateParallel(){
             if(consValid()){
-
                 progress += getProgressIncrease(craftTime);
                 totalProgress += delta();
                 warmup = Mathf.approachDelta(warmup, 1f, warmupSpeed);
-
-                if(Mathf.chanceDelta(updateEffectChance)){
-                    updateEffect.at(x + Mathf.range(size * 4f), y + Mathf.range(size * 4));
-                }
             }else{
                 warmup = Mathf.approachDelta(warmup, 0f, warmupSpeed);
             }
+        }
+
+        @Override
+        public void updateTile(){
+            if(!block.parallelUpdate) updateParallel();
+
+            if(consValid() && Mathf.chanceDelta(updateEffectChance)){
+                updateEffect.at(x + Mathf.range(size * 4f), y + Mathf.range(size * 4));
+            }
 
             if(progress >= 1f){
                 consume();
@@ -154,6 +158,11 @@ public class GenericCrafter extends Block{
             if(outputLiquid != null){
                 dumpLiquid(outputLiquid.liquid);
             }
+
+            //idle and spun down; input arriving wakes this up, and anything else is checked again at the next dump
+            if(outputLiquid == null && !consValid() && warmup < 0.01f && progress < 1f){
+                sleepFor(dumpTime);
+            }
         }
 
         @Override
@@ -78,7 +78,7 @@ public class CommandCenter extends Block{
             super.updateTile();
 
             //push away allied units
-            team.data().tree().intersect(x - forceRadius/2f, y - forceRadius/2f, forceRadius, forceRadius, u -> {
+            team.data().grid().intersect(x - forceRadius/2f, y - forceRadius/2f, forceRadius, forceRadius, u -> {
                 if(!u.isPlayer()){
                     float dst = dst(u);
                     float rs = forceRadius + u.hitSize/2f;
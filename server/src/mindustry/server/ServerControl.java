@@ -196,6 +196,8 @@ public class ServerControl implements ApplicationListener{
             autosaveCount.reset(0, Config.autosaveSpacing.num() * 60);
         });
 
+        SaveIO.deleteTempFiles(saveDirectory);
+
         //autosave periodically
         Events.run(Trigger.update, () -> {
             if(state.isPlaying() && Config.autosave.bool()){
@@ -220,12 +222,7 @@ public class ServerControl implements ApplicationListener{
                     Fi file = saveDirectory.child(fileName);
                     info("Autosaving...");
 
-                    try{
-                        SaveIO.save(file);
-                        info("Autosave completed.");
-                    }catch(Throwable e){
-                        err("Autosave failed.", e);
-                    }
+                    SaveIO.saveAsync(file, () -> info("Autosave completed."), e -> err("Autosave failed.", e));
                 }
             }
         });
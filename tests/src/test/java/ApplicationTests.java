@@ -1,6 +1,7 @@
 import arc.*;
 import arc.backend.headless.*;
 import arc.files.*;
+import arc.math.*;
 import arc.math.geom.*;
 import arc.struct.*;
 import arc.util.*;
@@ -8,6 +9,7 @@ import arc.util.io.*;
 import arc.util.serialization.*;
 import arc.util.serialization.JsonValue.*;
 import mindustry.*;
+import mindustry.async.*;
 import mindustry.content.*;
 import mindustry.core.*;
 import mindustry.core.GameState.*;
@@ -18,12 +20,16 @@ import mindustry.gen.*;
 import mindustry.io.*;
 import mindustry.io.SaveIO.*;
 import mindustry.maps.*;
+import mindustry.maps.filters.*;
+import mindustry.maps.filters.GenerateFilter.*;
 import mindustry.mod.*;
 import mindustry.mod.Mods.*;
 import mindustry.net.*;
 import mindustry.net.Packets.*;
 import mindustry.type.*;
 import mindustry.world.*;
+import mindustry.world.blocks.production.Drill.*;
+import mindustry.world.blocks.production.GenericCrafter.*;
 import mindustry.world.blocks.storage.*;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.*;
@@ -31,6 +37,7 @@ import org.junit.jupiter.params.provider.*;
 
 import java.io.*;
 import java.nio.*;
+import java.util.zip.*;
 
 import static mindustry.Vars.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -362,6 +369,238 @@ public class ApplicationTests{
         assertTrue(state.teams.playerCores().size > 0);
     }
 
+    @Test
+    void parallelDeflate() throws IOException{
+        int[] sizes = {1000, ParallelDeflate.blockSize, ParallelDeflate.blockSize * 3 + 17};
+        Rand rand = new Rand(1);
+
+        for(int size : sizes){
+            //repetitive enough that blocks reference the data before them
+            byte[] data = new byte[size];
+            for(int i = 0; i < size; i++){
+                data[i] = (byte)(rand.chance(0.1) ? rand.random(255) : i % 61);
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ParallelDeflate.write(data, size, out, Deflater.BEST_SPEED);
+            byte[] compressed = out.toByteArray();
+
+            Adler32 adler = new Adler32();
+            adler.update(data, 0, size);
+            int trailer = ((compressed[compressed.length - 4] & 0xff) << 24) | ((compressed[compressed.length - 3] & 0xff) << 16)
+                | ((compressed[compressed.length - 2] & 0xff) << 8) | (compressed[compressed.length - 1] & 0xff);
+            assertEquals((int)adler.getValue(), trailer, "checksum of " + size + " bytes");
+
+            try(InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))){
+                assertArrayEquals(data, in.readAllBytes(), "inflated " + size + " bytes");
+            }
+        }
+    }
+
+    @Test
+    void worldStreamCache() throws IOException{
+        world.loadMap(testMap);
+        state.set(State.playing);
+        Player player = Player.create();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        NetworkIO.writeWorld(player, expected);
+
+        //player data compressed on its own, followed by the shared map data and a combined checksum
+        ReusableByteOutStream packed = netServer.worldStream.write(player);
+        try(InputStream in = new InflaterInputStream(new ByteArrayInputStream(packed.getBytes(), 0, packed.size()))){
+            assertArrayEquals(expected.toByteArray(), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void packedTiles() throws IOException{
+        world.loadMap(testMap);
+        PackedTiles packed = MapIO.readTiles(testMap);
+
+        assertEquals(world.width(), packed.width);
+        assertEquals(world.height(), packed.height);
+
+        int buildings = 0;
+        for(Tile tile : world.tiles){
+            int index = packed.index(tile.x, tile.y);
+            assertEquals(tile.floor(), packed.floor(index));
+            assertEquals(tile.overlay(), packed.overlay(index));
+            assertEquals(tile.block(), packed.block(index));
+
+            if(tile.build != null && tile.isCenter()){
+                buildings++;
+                assertNotNull(packed.building(index));
+                assertEquals(tile.block(), packed.building(index).block());
+            }
+        }
+
+        assertEquals(buildings, packed.buildingCount());
+    }
+
+    @Test
+    void packedTilesLeaveWorldAlone() throws IOException{
+        //an empty world of the same size, so multiblocks in the map would land on its tiles if they were linked through it
+        Tiles tiles = world.resize(testMap.width, testMap.height);
+        world.beginMapLoad();
+        tiles.fill();
+        world.endMapLoad();
+
+        PackedTiles packed = MapIO.readTiles(testMap);
+        assertTrue(packed.buildingCount() > 0);
+
+        assertFalse(world.isGenerating());
+        for(Tile tile : world.tiles){
+            assertEquals(Blocks.air, tile.block());
+            assertNull(tile.build);
+        }
+    }
+
+    @Test
+    void parallelFilters(){
+        world.loadMap(testMap);
+
+        Seq<GenerateFilter> filters = Seq.with(new NoiseFilter(), new DistortFilter(), new MedianFilter(), new BlendFilter(), new ScatterFilter(), new MirrorFilter());
+        for(GenerateFilter filter : filters){
+            filter.randomize();
+        }
+
+        FilterPipeline serial = new FilterPipeline(), parallel = new FilterPipeline();
+        serial.parallel = false;
+        serial.begin(world.tiles);
+        parallel.begin(world.tiles);
+
+        for(GenerateFilter filter : filters){
+            serial.apply(filter);
+            parallel.apply(filter);
+        }
+
+        assertArrayEquals(serial.result().floors, parallel.result().floors);
+        assertArrayEquals(serial.result().overlays, parallel.result().overlays);
+        assertArrayEquals(serial.result().blocks, parallel.result().blocks);
+    }
+
+    @Test
+    void filtersMatchPerTileOutput(){
+        Seq<GenerateFilter> filters = Seq.with(
+            new NoiseFilter(),
+            new ScatterFilter(){{
+                block = Blocks.boulder;
+                chance = 0.2f;
+            }},
+            new MirrorFilter(),
+            new DistortFilter(),
+            new MedianFilter(),
+            new BlendFilter(),
+            new OreFilter()
+        );
+        for(int i = 0; i < filters.size; i++){
+            filters.get(i).seed = 1234 + i;
+        }
+
+        //reference output: the per-tile implementation that the pipeline replaced
+        world.loadMap(testMap);
+        GenerateInput input = new GenerateInput();
+        input.begin(world.width(), world.height(), world.tiles::getn);
+        for(GenerateFilter filter : filters){
+            applyPerTile(filter, world.tiles, input);
+        }
+        PackedTiles expected = new PackedTiles(world.width(), world.height());
+        for(Tile tile : world.tiles){
+            expected.set(expected.index(tile.x, tile.y), tile);
+        }
+
+        for(boolean parallel : new boolean[]{false, true}){
+            world.loadMap(testMap);
+            FilterPipeline pipeline = new FilterPipeline();
+            pipeline.parallel = parallel;
+            pipeline.apply(world.tiles, filters);
+
+            for(Tile tile : world.tiles){
+                int i = expected.index(tile.x, tile.y);
+                String at = tile.x + ", " + tile.y + (parallel ? " (parallel)" : " (serial)");
+                assertEquals(expected.floor(i), tile.floor(), "floor at " + at);
+                assertEquals(expected.overlay(i), tile.overlay(), "overlay at " + at);
+                assertEquals(expected.block(i), tile.block(), "block at " + at);
+            }
+        }
+    }
+
+    /** The original GenerateFilter.apply(Tiles, GenerateInput): buffered filters write to a copy, others are applied in place. */
+    static void applyPerTile(GenerateFilter filter, Tiles tiles, GenerateInput in){
+        int size = tiles.width * tiles.height;
+
+        if(filter.isBuffered()){
+            Block[] blocks = new Block[size], floors = new Block[size], overlays = new Block[size];
+
+            for(int i = 0; i < size; i++){
+                Tile tile = tiles.geti(i);
+
+                in.set(tile.x, tile.y, tile.block(), tile.floor(), tile.overlay());
+                filter.apply(in);
+
+                blocks[i] = in.block;
+                floors[i] = in.floor;
+                overlays[i] = in.overlay;
+            }
+
+            for(int i = 0; i < size; i++){
+                Tile tile = tiles.geti(i);
+                Block block = blocks[i], floor = floors[i], overlay = overlays[i];
+
+                tile.setFloor(floor.asFloor());
+                tile.setOverlay(!floor.asFloor().hasSurface() && overlay.asFloor().needsSurface ? Blocks.air : overlay);
+
+                if(!tile.block().synthetic() && !block.synthetic()){
+                    tile.setBlock(block);
+                }
+            }
+        }else{
+            for(Tile tile : tiles){
+                in.set(tile.x, tile.y, tile.block(), tile.floor(), tile.overlay());
+                filter.apply(in);
+
+                tile.setFloor(in.floor.asFloor());
+                tile.setOverlay(!in.floor.asFloor().hasSurface() && in.overlay.asFloor().needsSurface ? Blocks.air : in.overlay);
+
+                if(!tile.block().synthetic() && !in.block.synthetic()){
+                    tile.setBlock(in.block);
+                }
+            }
+        }
+    }
+
+    @Test
+    void regionIndexedMap() throws IOException{
+        world.loadMap(testMap);
+        Fi file = saveDirectory.child("indexed.msav");
+        MapIO.writeMap(file, testMap, true);
+        assertTrue(RegionIO.isIndexed(file));
+
+        Map map = MapIO.createMap(file, true);
+        assertEquals(world.width(), map.width);
+        assertEquals(world.height(), map.height);
+
+        PackedTiles all = MapIO.readTiles(map);
+        PackedTiles region = MapIO.readRegion(map, 50, 40, 100, 30);
+        for(Tile tile : world.tiles){
+            int index = all.index(tile.x, tile.y);
+            assertEquals(tile.floor(), all.floor(index));
+            assertEquals(tile.block(), all.block(index));
+
+            if(region.in(tile.x - 50, tile.y - 40)){
+                int rindex = region.index(tile.x - 50, tile.y - 40);
+                assertEquals(tile.floor(), region.floor(rindex));
+                assertEquals(tile.overlay(), region.overlay(rindex));
+                assertEquals(tile.block(), region.block(rindex));
+            }
+        }
+
+        SaveIO.load(file);
+        assertEquals(map.width, world.width());
+        assertEquals(map.height, world.height());
+    }
+
     void updateBlocks(int times){
         for(Tile tile : world.tiles){
             if(tile.build != null && tile.isCenter()){
@@ -549,6 +788,138 @@ public class ApplicationTests{
         world.tile(0, 0).build.acceptStack(Items.copper, 1000, null);
     }
 
+    @Test
+    void conveyorLineThroughput(){
+        world.loadMap(testMap);
+        state.set(State.playing);
+
+        //a long line and a single conveyor, both fed by a source and emptied into a vault
+        int length = 20;
+        world.rawTile(0, 10).setBlock(Blocks.itemSource, Team.sharded);
+        world.rawTile(0, 10).build.configureAny(Items.copper);
+        for(int x = 1; x <= length; x++){
+            world.rawTile(x, 10).setBlock(Blocks.conveyor, Team.sharded, 0);
+        }
+        Tile longVault = world.rawTile(length + 2, 10);
+        longVault.setBlock(Blocks.vault, Team.sharded);
+
+        world.rawTile(0, 16).setBlock(Blocks.itemSource, Team.sharded);
+        world.rawTile(0, 16).build.configureAny(Items.copper);
+        world.rawTile(1, 16).setBlock(Blocks.conveyor, Team.sharded, 0);
+        Tile shortVault = world.rawTile(3, 16);
+        shortVault.setBlock(Blocks.vault, Team.sharded);
+
+        //a side input merging into the middle of the long line
+        world.rawTile(length / 2, 12).setBlock(Blocks.itemSource, Team.sharded);
+        world.rawTile(length / 2, 12).build.configureAny(Items.lead);
+        world.rawTile(length / 2, 11).setBlock(Blocks.conveyor, Team.sharded, 3);
+
+        updateBlocks(300);
+        int longStart = longVault.build.items.total(), shortStart = shortVault.build.items.total();
+        updateBlocks(300);
+
+        assertTrue(longStart > 0, "No items reached the end of the line");
+        //items merge into gaps, so the line fills up, but never moves faster or slower than a single conveyor
+        assertEquals(shortVault.build.items.total() - shortStart, longVault.build.items.total() - longStart, 1f, "Line throughput differs from a single conveyor");
+        assertTrue(longVault.build.items.has(Items.copper), "Items from the start of the line were lost");
+        assertTrue(longVault.build.items.has(Items.lead), "Side input did not merge into the line");
+    }
+
+    @Test
+    void parallelBuildingUpdates(){
+        int minParallel = BuildingUpdater.minParallel;
+        try{
+            BuildingUpdater.minParallel = Integer.MAX_VALUE;
+            FloatSeq serial = productionField();
+            BuildingUpdater.minParallel = 0;
+            FloatSeq parallel = productionField();
+
+            assertTrue(serial.size > 0);
+            assertArrayEquals(serial.toArray(), parallel.toArray(), "Parallel building update differs from the serial update");
+        }finally{
+            BuildingUpdater.minParallel = minParallel;
+        }
+    }
+
+    /** Runs a field of drills and crafters through the building updater, and returns the progress, warmup and items of each building. */
+    FloatSeq productionField(){
+        Tiles tiles = world.resize(48, 24);
+        world.beginMapLoad();
+        tiles.fill();
+        world.endMapLoad();
+        state.set(State.playing);
+
+        for(int x = 0; x < 48; x += 2){
+            for(int y = 0; y < 24; y += 2){
+                Tile tile = world.rawTile(x, y);
+                if(x < 24){
+                    for(int dx = 0; dx < 2; dx++){
+                        for(int dy = 0; dy < 2; dy++){
+                            world.rawTile(x + dx, y + dy).setOverlay(Blocks.oreCopper);
+                        }
+                    }
+                    tile.setBlock(Blocks.mechanicalDrill, Team.sharded);
+                }else{
+                    tile.setBlock(Blocks.graphitePress, Team.sharded);
+                    tile.build.items.add(Items.coal, 10);
+                }
+            }
+        }
+
+        for(Tile tile : world.tiles){
+            if(tile.build != null && tile.isCenter()){
+                tile.build.updateProximity();
+            }
+        }
+
+        BuildingUpdater updater = new BuildingUpdater();
+        for(int i = 0; i < 600; i++){
+            Time.update();
+            logic.sleepScheduler.update();
+            updater.update();
+            for(Tile tile : world.tiles){
+                if(tile.build != null && tile.isCenter() && !tile.build.isSleeping()){
+                    tile.build.update();
+                }
+            }
+        }
+
+        FloatSeq out = new FloatSeq();
+        for(Tile tile : world.tiles){
+            if(tile.build instanceof DrillBuild drill && tile.isCenter()){
+                out.add(drill.progress, drill.warmup, drill.items.total());
+            }else if(tile.build instanceof GenericCrafterBuild crafter && tile.isCenter()){
+                out.add(crafter.progress, crafter.warmup, crafter.items.get(Items.coal), crafter.items.get(Items.graphite));
+            }
+        }
+        return out;
+    }
+
+    @Test
+    void removedSleepingBuildingStaysRemoved(){
+        world.loadMap(testMap);
+        state.set(State.playing);
+
+        Tile tile = world.rawTile(4, 4);
+        tile.setBlock(Blocks.mechanicalDrill, Team.sharded);
+        Building drill = tile.build;
+
+        drill.sleepFor(10f);
+        assertTrue(drill.isSleeping());
+        assertFalse(Groups.build.contains(b -> b == drill));
+
+        tile.setAir();
+
+        for(int i = 0; i < 20; i++){
+            Time.update();
+            logic.sleepScheduler.update();
+        }
+
+        assertFalse(drill.isSleeping());
+        assertFalse(Groups.build.contains(b -> b == drill), "Removed building was woken up");
+        assertNull(tile.build);
+    }
+
     @Test
     void conveyorBench(){
         int[] itemsa = {0};
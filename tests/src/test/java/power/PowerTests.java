@@ -140,5 +140,44 @@ public class PowerTests extends PowerTestFixture{
                 assertFalse(consumePower.valid(consumerTile.build));
             }
         }
+
+        @Test
+        void mergeKeepsLargerGraph(){
+            Tile first = createFakeTile(0, 0, createFakeBattery(10f));
+            Tile second = createFakeTile(0, 1, createFakeBattery(10f));
+            Tile third = createFakeTile(0, 2, createFakeBattery(10f));
+
+            PowerGraph larger = first.build.power.graph;
+            larger.addGraph(second.build.power.graph);
+            third.build.power.graph.addGraph(larger);
+
+            assertSame(larger, third.build.power.graph);
+            assertSame(larger, second.build.power.graph);
+            assertEquals(30f, larger.getTotalBatteryCapacity(), Mathf.FLOAT_ROUNDING_ERROR);
+        }
+
+        @Test
+        void removeSplitsDisconnectedParts(){
+            Tile[] tiles = new Tile[4];
+            for(int i = 0; i < tiles.length; i++){
+                tiles[i] = createFakeTile(0, i, createFakeBattery(10f));
+                if(i > 0){
+                    tiles[i].build.proximity.add(tiles[i - 1].build);
+                    tiles[i - 1].build.proximity.add(tiles[i].build);
+                    tiles[0].build.power.graph.addGraph(tiles[i].build.power.graph);
+                }
+            }
+
+            PowerGraph graph = tiles[0].build.power.graph;
+            graph.remove(tiles[1].build);
+
+            //the larger part keeps the graph, the smaller one is split off
+            assertSame(graph, tiles[2].build.power.graph);
+            assertSame(graph, tiles[3].build.power.graph);
+            assertNotSame(graph, tiles[0].build.power.graph);
+            assertNotSame(graph, tiles[1].build.power.graph);
+            assertEquals(20f, graph.getTotalBatteryCapacity(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(10f, tiles[0].build.power.graph.getTotalBatteryCapacity(), Mathf.FLOAT_ROUNDING_ERROR);
+        }
     }
 }